@@ -0,0 +1,135 @@
+package com.webserver;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+/**
+ * 不经过网络的 HttpExchange，响应体写入计数流后丢弃，用于直接调用处理器
+ */
+class FakeExchange extends HttpExchange {
+    private static final InetSocketAddress ADDRESS = new InetSocketAddress("127.0.0.1", 11000);
+
+    private final String method;
+    private final URI uri;
+    private final Headers requestHeaders = new Headers();
+    private Headers responseHeaders = new Headers();
+    private InputStream requestBody;
+    private CountingOutputStream responseBody;
+    private int responseCode = -1;
+
+    FakeExchange(String method, String uri) {
+        this.method = method;
+        this.uri = URI.create(uri);
+        reset();
+    }
+
+    /**
+     * 清空响应状态，同一个实例可以在多次调用之间复用
+     */
+    FakeExchange reset() {
+        responseHeaders = new Headers();
+        requestBody = new ByteArrayInputStream(new byte[0]);
+        responseBody = new CountingOutputStream(OutputStream.nullOutputStream());
+        responseCode = -1;
+        return this;
+    }
+
+    long bytesWritten() {
+        return responseBody.getCount();
+    }
+
+    @Override
+    public Headers getRequestHeaders() {
+        return requestHeaders;
+    }
+
+    @Override
+    public Headers getResponseHeaders() {
+        return responseHeaders;
+    }
+
+    @Override
+    public URI getRequestURI() {
+        return uri;
+    }
+
+    @Override
+    public String getRequestMethod() {
+        return method;
+    }
+
+    @Override
+    public HttpContext getHttpContext() {
+        return null;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public InputStream getRequestBody() {
+        return requestBody;
+    }
+
+    @Override
+    public OutputStream getResponseBody() {
+        return responseBody;
+    }
+
+    @Override
+    public void sendResponseHeaders(int rCode, long responseLength) {
+        responseCode = rCode;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return ADDRESS;
+    }
+
+    @Override
+    public int getResponseCode() {
+        return responseCode;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return ADDRESS;
+    }
+
+    @Override
+    public String getProtocol() {
+        return "HTTP/1.1";
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return null;
+    }
+
+    @Override
+    public void setAttribute(String name, Object value) {
+    }
+
+    @Override
+    public void setStreams(InputStream i, OutputStream o) {
+        if (i != null) {
+            requestBody = i;
+        }
+        if (o != null) {
+            responseBody = new CountingOutputStream(o);
+        }
+    }
+
+    @Override
+    public HttpPrincipal getPrincipal() {
+        return null;
+    }
+}
\ No newline at end of file
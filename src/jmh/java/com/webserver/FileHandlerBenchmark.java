@@ -0,0 +1,95 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FileHandler 处理静态文件请求的开销。
+ * 小文件命中内存缓存（含压缩变体），超过缓存单文件上限的大文件每次从磁盘用 FileChannel 发送。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileHandlerBenchmark {
+    private static final Path DIR = Paths.get("jmh-files");
+
+    /** 1 KB、64 KB 走缓存，8 MB 超过 1 MB 的单文件上限，从磁盘流式发送 */
+    @Param({"1024", "65536", "8388608"})
+    public int fileBytes;
+
+    /** 客户端的 Accept-Encoding，identity 表示不带该请求头 */
+    @Param({"identity", "gzip"})
+    public String acceptEncoding;
+
+    private WebServer.FileHandler handler;
+    private FakeExchange exchange;
+    private FakeExchange missing;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Files.createDirectories(DIR);
+        file = DIR.resolve("page-" + fileBytes + ".html");
+        Files.write(file, html(fileBytes));
+
+        StaticFileCache cache = new StaticFileCache(32L * 1024 * 1024, 1024L * 1024, 1000,
+                WebServer.FileHandler::getMimeType, 1024);
+        handler = new WebServer.FileHandler(cache);
+        exchange = new FakeExchange("GET", "/" + DIR.resolve(file.getFileName()).toString().replace('\\', '/'));
+        if (!acceptEncoding.equals("identity")) {
+            exchange.getRequestHeaders().set("Accept-Encoding", acceptEncoding);
+        }
+        missing = new FakeExchange("GET", "/jmh-files/missing.html");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long serveFile() throws IOException {
+        handler.handle(exchange.reset());
+        return exchange.bytesWritten();
+    }
+
+    @Benchmark
+    public long notFound() throws IOException {
+        handler.handle(missing.reset());
+        return missing.bytesWritten();
+    }
+
+    /**
+     * 重复的HTML片段，压缩率接近真实页面
+     */
+    static byte[] html(int size) {
+        byte[] chunk = ("<div class=\"card\"><h2>标题</h2><p>Lorem ipsum dolor sit amet, consectetur "
+                + "adipiscing elit, sed do eiusmod tempor incididunt ut labore.</p></div>\n")
+                .getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = chunk[i % chunk.length];
+        }
+        return content;
+    }
+}
\ No newline at end of file
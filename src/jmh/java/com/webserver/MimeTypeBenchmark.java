@@ -0,0 +1,30 @@
+package com.webserver;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MimeTypeBenchmark {
+    /** 覆盖第一个分支、靠后的分支和未知扩展名 */
+    @Param({"index.html", "assets/app.min.js", "photo.JPEG", "archive.tar.gz"})
+    public String filename;
+
+    @Benchmark
+    public String getMimeType() {
+        return WebServer.FileHandler.getMimeType(filename);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,111 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 监控历史的写入和查询开销。准备阶段按5秒间隔写入90天的样本，原始记录按默认配置只保留7天
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MonitorHistoryBenchmark {
+    private static final String TARGET = "http://example.com";
+    private static final long INTERVAL_MILLIS = 5000;
+    private static final int DAYS = 90;
+
+    private Path directory;
+    private MonitorHistory history;
+    private long now;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("monitor-history");
+        history = new MonitorHistory(directory, 7, 365);
+        now = System.currentTimeMillis();
+        for (long t = now - DAYS * MonitorHistory.DAY_MILLIS; t < now; t += INTERVAL_MILLIS) {
+            long i = t / INTERVAL_MILLIS;
+            history.append(TARGET, t, 5 + i % 40, i % 97 == 0 ? ProbeOutcome.TIMEOUT : ProbeOutcome.OK);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        history.close();
+        delete(directory);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public List<MonitorHistory.Bucket> last24hByMinute() throws IOException {
+        return history.query(TARGET, now - MonitorHistory.DAY_MILLIS, now, MonitorHistory.MINUTE_MILLIS);
+    }
+
+    @Benchmark
+    public List<MonitorHistory.Bucket> last90dByHour() throws IOException {
+        return history.query(TARGET, now - DAYS * MonitorHistory.DAY_MILLIS, now, 3_600_000);
+    }
+
+    @Benchmark
+    public List<MonitorHistory.Bucket> lastHourRaw() throws IOException {
+        return history.query(TARGET, now - 3_600_000, now, INTERVAL_MILLIS);
+    }
+
+    /**
+     * 每轮在新目录里连续写入一批样本，批量大小不超过单日原始记录上限
+     */
+    @State(Scope.Thread)
+    public static class AppendState {
+        private Path directory;
+        private MonitorHistory history;
+        private long time;
+
+        @Setup(Level.Iteration)
+        public void setUp() throws IOException {
+            directory = Files.createTempDirectory("monitor-history-append");
+            history = new MonitorHistory(directory, 7, 365);
+            time = Math.floorDiv(System.currentTimeMillis(), MonitorHistory.DAY_MILLIS) * MonitorHistory.DAY_MILLIS;
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            history.close();
+            delete(directory);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, batchSize = 1_000_000)
+    @Measurement(iterations = 5, batchSize = 1_000_000)
+    public void append(AppendState state) {
+        // 每次前进10毫秒，100万条都落在同一天的分段里
+        state.history.append(TARGET, state.time += 10, 12, ProbeOutcome.OK);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 上传请求体解析：边界查找加上写临时文件。
+ * 上传路径原来的 extractFileContent/indexOf 已被流式 MultipartParser 取代，这里测它在不同请求体大小下的耗时。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx256m"})
+public class MultipartParserBenchmark {
+    /** 1 KB 到 500 MB，堆限制为256MB以确认内存占用与请求体大小无关 */
+    @Param({"1024", "1048576", "67108864", "524288000"})
+    public long payloadBytes;
+
+    private Path tempDir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        tempDir = Files.createDirectories(Paths.get("jmh-files", "uploads"));
+    }
+
+    @Benchmark
+    public long parse() throws IOException {
+        MultipartParser parser = new MultipartParser(SyntheticMultipartStream.BOUNDARY, tempDir, Long.MAX_VALUE);
+        List<MultipartParser.Part> parts = parser.parse(new SyntheticMultipartStream(payloadBytes));
+        long size = 0;
+        for (MultipartParser.Part part : parts) {
+            size += part.size();
+            part.delete();
+        }
+        return size;
+    }
+}
\ No newline at end of file
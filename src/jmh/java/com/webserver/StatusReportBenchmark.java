@@ -0,0 +1,75 @@
+package com.webserver;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * 监控每次检查后生成文本报告的开销
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatusReportBenchmark {
+    private WebStatusMonitor monitor;
+    private WebStatusMonitor.TargetState local;
+    private WebStatusMonitor.TargetState remote;
+    private HttpProbe.Result ok;
+    private HttpProbe.Result timeout;
+
+    @Setup
+    public void setUp() {
+        // 生成报告只用到目标自身的统计计数，不需要配置和Web服务器
+        monitor = new WebStatusMonitor(null, null);
+        local = new WebStatusMonitor.TargetState(MonitorTarget.local("127.0.0.1", 11000, 5000, 5000));
+        remote = new WebStatusMonitor.TargetState(MonitorTarget.parse("example.com", 5000, 5000));
+        // 填满一小时窗口的样本，报告里的窗口统计按真实规模扫描
+        for (int i = 0; i < 720; i++) {
+            local.record(i % 50 == 0 ? ProbeOutcome.TIMEOUT : ProbeOutcome.OK, 5 + i % 20);
+            remote.record(i % 3 == 0 ? ProbeOutcome.CONNECT : ProbeOutcome.OK, 40 + i % 7);
+        }
+        ok = new HttpProbe.Result();
+        ok.outcome = ProbeOutcome.OK;
+        ok.remoteAddress = "127.0.0.1";
+        ok.statusCode = 200;
+        ok.contentLength = 16557;
+        ok.bodyBytes = 16557;
+        ok.contentType = "text/html";
+        ok.serverHeader = "Jdk-HttpServer";
+        ok.dnsNanos = 20_000;
+        ok.connectNanos = 150_000;
+        ok.ttfbNanos = 9_000_000;
+        ok.downloadNanos = 2_500_000;
+        ok.totalNanos = 12_000_000;
+        ok.crc32c = "5d7c9a12";
+        ok.sha256 = "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08";
+        ok.verified = true;
+        timeout = new HttpProbe.Result();
+        timeout.outcome = ProbeOutcome.TIMEOUT;
+        timeout.detail = "Connect timed out";
+        timeout.remoteAddress = "93.184.216.34";
+        timeout.dnsNanos = 30_000_000;
+        timeout.totalNanos = 5_000_000_000L;
+    }
+
+    @Benchmark
+    public String successReport() {
+        return monitor.generateStatusReport(local, ok);
+    }
+
+    @Benchmark
+    public String failureReport() {
+        return monitor.generateStatusReport(remote, timeout);
+    }
+}
\ No newline at end of file
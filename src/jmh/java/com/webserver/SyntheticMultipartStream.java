@@ -0,0 +1,73 @@
+package com.webserver;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 按需生成的 multipart/form-data 请求体：一个普通字段加一个指定大小的文件部分。
+ * 内容由固定片段循环拼出，不在内存里保存整个请求体，可以模拟数百MB的上传。
+ * 文件内容里有意包含 "\r\n-" 这类与边界前缀部分匹配的字节，让边界查找走到最坏的比较路径。
+ */
+class SyntheticMultipartStream extends InputStream {
+    static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    private final byte[] head;
+    private final byte[] chunk;
+    private final byte[] tail;
+    private final long fileBytes;
+    private final long total;
+    private long position = 0;
+
+    SyntheticMultipartStream(long fileBytes) {
+        this.head = ("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"comment\"\r\n\r\n"
+                + "benchmark upload\r\n"
+                + "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"htmlFile\"; filename=\"index.html\"\r\n"
+                + "Content-Type: text/html\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        this.chunk = ("<tr><td>row</td><td>value</td></tr>\r\n-- comment --\r\n"
+                + "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1);
+        this.tail = ("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        this.fileBytes = fileBytes;
+        this.total = head.length + fileBytes + tail.length;
+    }
+
+    long length() {
+        return total;
+    }
+
+    @Override
+    public int read() {
+        byte[] one = new byte[1];
+        return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (position >= total) {
+            return -1;
+        }
+        int n = 0;
+        while (n < len && position < total) {
+            int copied;
+            if (position < head.length) {
+                int from = (int) position;
+                copied = Math.min(len - n, head.length - from);
+                System.arraycopy(head, from, b, off + n, copied);
+            } else if (position < head.length + fileBytes) {
+                long offset = position - head.length;
+                int from = (int) (offset % chunk.length);
+                copied = (int) Math.min(Math.min(len - n, chunk.length - from), fileBytes - offset);
+                System.arraycopy(chunk, from, b, off + n, copied);
+            } else {
+                int from = (int) (position - head.length - fileBytes);
+                copied = Math.min(len - n, tail.length - from);
+                System.arraycopy(tail, from, b, off + n, copied);
+            }
+            n += copied;
+            position += copied;
+        }
+        return n;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,344 @@
+package com.webserver;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步访问日志。
+ * 请求线程把记录写入预分配的无锁环形缓冲区（多生产者单消费者），后台线程批量格式化并写入按大小滚动的文件。
+ * 缓冲区满时直接丢弃记录并计数，不阻塞请求。
+ */
+public class AccessLog {
+    private static final int BATCH_SIZE = 512;
+    private static final DateTimeFormatter CLF_TIME =
+            DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    private final Record[] ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+
+    private final Path file;
+    private final String format;
+    private final long maxBytes;
+    private final int backups;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final StringBuilder line = new StringBuilder(256);
+    private Writer writer;
+    private long fileBytes;
+    private long cachedSecond = -1;
+    private String cachedTime;
+    private volatile Thread writerThread;
+
+    /**
+     * @param capacity 环形缓冲区容量，向上取整为2的幂
+     * @param format   common、combined 或 json
+     */
+    public AccessLog(String file, String format, int capacity, long maxBytes, int backups) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Record[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Record();
+            ring[i].sequence = i - size;
+        }
+        this.mask = size - 1;
+        this.file = Paths.get(file);
+        this.format = format;
+        this.maxBytes = maxBytes;
+        this.backups = backups;
+    }
+
+    public synchronized void start() {
+        if (writerThread != null) {
+            return;
+        }
+        writerThread = Thread.ofPlatform().daemon().name("access-log-writer").start(this::writeLoop);
+    }
+
+    /**
+     * 记录一次请求。只做一次CAS和字段赋值，缓冲区满时返回false并计入丢弃数。
+     */
+    public boolean log(long timeMillis, String remoteAddress, String method, String uri, String protocol,
+                       int status, long bytesSent, long durationMicros, String referer, String userAgent) {
+        long sequence;
+        do {
+            sequence = tail.get();
+            if (sequence - head >= ring.length) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!tail.compareAndSet(sequence, sequence + 1));
+
+        Record record = ring[(int) (sequence & mask)];
+        record.timeMillis = timeMillis;
+        record.remoteAddress = remoteAddress;
+        record.method = method;
+        record.uri = uri;
+        record.protocol = protocol;
+        record.status = status;
+        record.bytesSent = bytesSent;
+        record.durationMicros = durationMicros;
+        record.referer = referer;
+        record.userAgent = userAgent;
+        // 最后发布序号，消费者看到序号后才读取其他字段
+        record.sequence = sequence;
+        Thread consumer = writerThread;
+        if (consumer != null && sequence == head) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * 等待后台线程写完当前已提交的记录
+     */
+    public void flush(long timeoutMillis) {
+        long target = tail.get();
+        long giveUpAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Thread consumer = writerThread;
+        while (consumer != null && head < target && System.nanoTime() < giveUpAt) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            try {
+                int count = drainBatch();
+                if (count == 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+                }
+            } catch (IOException e) {
+                System.err.println("✗ 写入访问日志失败: " + e.getMessage());
+                closeWriter();
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+    }
+
+    private int drainBatch() throws IOException {
+        int count = 0;
+        long next = head;
+        while (count < BATCH_SIZE) {
+            Record record = ring[(int) (next & mask)];
+            if (record.sequence != next) {
+                break;
+            }
+            format(record);
+            record.remoteAddress = record.method = record.uri = record.protocol = null;
+            record.referer = record.userAgent = null;
+            next++;
+            // 释放槽位给生产者
+            head = next;
+            count++;
+            writeLine();
+        }
+        if (count > 0) {
+            writer.flush();
+            written.addAndGet(count);
+        }
+        return count;
+    }
+
+    private void writeLine() throws IOException {
+        if (writer == null || fileBytes >= maxBytes) {
+            rotate();
+        }
+        writer.append(line);
+        fileBytes += utf8Length(line);
+    }
+
+    /**
+     * 按 UTF-8 编码后的字节数计算长度，轮转上限是字节数；逐字符累加，不为计数再编码一遍
+     */
+    static long utf8Length(CharSequence text) {
+        long bytes = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
+    private void rotate() throws IOException {
+        closeWriter();
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        if (Files.exists(file) && Files.size(file) >= maxBytes) {
+            for (int i = backups - 1; i >= 1; i--) {
+                Path older = Paths.get(file + "." + i);
+                if (Files.exists(older)) {
+                    Files.move(older, Paths.get(file + "." + (i + 1)), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            if (backups > 0) {
+                Files.move(file, Paths.get(file + ".1"), StandardCopyOption.REPLACE_EXISTING);
+            } else {
+                Files.delete(file);
+            }
+        }
+        fileBytes = Files.exists(file) ? Files.size(file) : 0;
+        writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+            writer = null;
+        }
+    }
+
+    private void format(Record r) {
+        line.setLength(0);
+        if ("json".equals(format)) {
+            line.append("{\"time\":\"").append(Instant.ofEpochMilli(r.timeMillis)).append('"');
+            line.append(",\"remote\":");
+            jsonString(r.remoteAddress);
+            line.append(",\"method\":");
+            jsonString(r.method);
+            line.append(",\"uri\":");
+            jsonString(r.uri);
+            line.append(",\"protocol\":");
+            jsonString(r.protocol);
+            line.append(",\"status\":").append(r.status);
+            line.append(",\"bytes\":").append(r.bytesSent);
+            line.append(",\"duration_us\":").append(r.durationMicros);
+            line.append(",\"referer\":");
+            jsonString(r.referer);
+            line.append(",\"user_agent\":");
+            jsonString(r.userAgent);
+            line.append("}\n");
+            return;
+        }
+
+        line.append(r.remoteAddress).append(" - - [").append(clfTime(r.timeMillis)).append("] \"")
+                .append(r.method).append(' ').append(r.uri).append(' ').append(r.protocol).append("\" ")
+                .append(r.status).append(' ');
+        if (r.bytesSent > 0) {
+            line.append(r.bytesSent);
+        } else {
+            line.append('-');
+        }
+        if ("combined".equals(format)) {
+            line.append(' ');
+            quoted(r.referer);
+            line.append(' ');
+            quoted(r.userAgent);
+        }
+        line.append('\n');
+    }
+
+    private String clfTime(long timeMillis) {
+        long second = timeMillis / 1000;
+        if (second != cachedSecond) {
+            cachedSecond = second;
+            cachedTime = CLF_TIME.format(ZonedDateTime.ofInstant(Instant.ofEpochSecond(second), zone));
+        }
+        return cachedTime;
+    }
+
+    /**
+     * 组合日志格式中的引号字段，转义引号和控制字符防止伪造日志行
+     */
+    private void quoted(String value) {
+        if (value == null) {
+            line.append("\"-\"");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\x%02x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    private void jsonString(String value) {
+        if (value == null) {
+            line.append("null");
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * 预分配的环形缓冲区槽位，sequence 等于槽位当前承载的序号时表示数据已发布
+     */
+    private static class Record {
+        private volatile long sequence;
+        private long timeMillis;
+        private String remoteAddress;
+        private String method;
+        private String uri;
+        private String protocol;
+        private int status;
+        private long bytesSent;
+        private long durationMicros;
+        private String referer;
+        private String userAgent;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,210 @@
+package com.webserver;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 准入控制：限制同时处理的请求数，超出的请求在有界队列中最多等待一小段时间，仍拿不到名额就立即拒绝，
+ * 由调用方返回 503，过载时延迟不会无限增长。
+ * 配置了延迟目标时按 AIMD 调整上限：GET/HEAD 请求的处理时间超过目标时上限乘以 0.9(每个目标时长内最多一次)，
+ * 否则每完成约 limit 个请求上限加1，直到配置的最大值，最低降到最大值的 1/10。
+ * 事件流、日志跟随这类长连接不经过这里，否则它们会一直占着名额。
+ * 用 ReentrantLock 而不是 synchronized/wait，JDK 21 中虚拟线程在 Object.wait 上会钉住载体线程。
+ */
+public final class AdmissionController {
+    private static final double DECREASE_FACTOR = 0.9;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+
+    private int maxLimit;
+    private int minLimit;
+    private int queueSize;
+    private long queueTimeoutNanos;
+    private long targetNanos;
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long lastDecreaseNanos;
+    private long admitted;
+    private long rejectedQueueFull;
+    private long rejectedTimeout;
+
+    /**
+     * @param maxInFlight        同时处理的请求数上限
+     * @param queueSize          等待名额的请求数上限，0 表示不排队
+     * @param queueTimeoutMillis 排队的最长时间
+     * @param targetMillis       延迟目标，0 表示不自适应，上限固定为 maxInFlight
+     */
+    public AdmissionController(int maxInFlight, int queueSize, long queueTimeoutMillis, long targetMillis) {
+        configure(maxInFlight, queueSize, queueTimeoutMillis, targetMillis);
+    }
+
+    /**
+     * 应用新配置，进行中的请求和计数保留
+     */
+    public void configure(int maxInFlight, int queueSize, long queueTimeoutMillis, long targetMillis) {
+        lock.lock();
+        try {
+            this.maxLimit = maxInFlight;
+            this.minLimit = Math.max(1, maxInFlight / 10);
+            this.queueSize = queueSize;
+            this.queueTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+            this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+            this.limit = maxInFlight;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 申请一个名额，需要时排队等待。返回 false 时请求应被拒绝，不要调用 release
+     */
+    public boolean acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                admitted++;
+                return true;
+            }
+            if (waiting >= queueSize || queueTimeoutNanos <= 0) {
+                rejectedQueueFull++;
+                return false;
+            }
+            waiting++;
+            try {
+                long remaining = queueTimeoutNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejectedTimeout++;
+                        return false;
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+            } finally {
+                waiting--;
+            }
+            inFlight++;
+            admitted++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 记录一个在进入准入控制前就被拒绝的请求(线程池队列已满)，计入队列满
+     */
+    public void recordOverflow() {
+        lock.lock();
+        try {
+            rejectedQueueFull++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 请求处理完毕，归还名额
+     *
+     * @param durationNanos 处理时间，小于0表示不作为延迟样本(如上传，耗时取决于请求体大小)
+     */
+    public void release(long durationNanos) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (targetNanos > 0 && durationNanos >= 0) {
+                long now = System.nanoTime();
+                if (durationNanos > targetNanos) {
+                    if (now - lastDecreaseNanos >= targetNanos) {
+                        limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+                        lastDecreaseNanos = now;
+                    }
+                } else {
+                    limit = Math.min(maxLimit, limit + 1.0 / limit);
+                }
+            }
+            released.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxLimit() {
+        lock.lock();
+        try {
+            return maxLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getAdmitted() {
+        lock.lock();
+        try {
+            return admitted;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 被拒绝的请求总数
+     */
+    public long getShed() {
+        lock.lock();
+        try {
+            return rejectedQueueFull + rejectedTimeout;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedQueueFull() {
+        lock.lock();
+        try {
+            return rejectedQueueFull;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejectedTimeout() {
+        lock.lock();
+        try {
+            return rejectedTimeout;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
\ No newline at end of file
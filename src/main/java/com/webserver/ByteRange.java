@@ -0,0 +1,85 @@
+package com.webserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HTTP Range 请求中的一个字节区间（闭区间）
+ */
+public class ByteRange {
+    /** 单个请求允许的最大区间数，超过时忽略 Range 头并返回完整内容 */
+    private static final int MAX_RANGES = 16;
+
+    private final long start;
+    private final long end;
+
+    public ByteRange(long start, long end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public long start() {
+        return start;
+    }
+
+    public long end() {
+        return end;
+    }
+
+    public long length() {
+        return end - start + 1;
+    }
+
+    public String contentRange(long totalLength) {
+        return "bytes " + start + "-" + end + "/" + totalLength;
+    }
+
+    /**
+     * 解析 Range 头。返回null表示头无效或不支持，应当忽略并返回完整内容；
+     * 返回空列表表示所有区间都无法满足，应当返回416。
+     */
+    public static List<ByteRange> parse(String header, long totalLength) {
+        if (header == null || !header.startsWith("bytes=")) {
+            return null;
+        }
+        String[] specs = header.substring("bytes=".length()).split(",");
+        if (specs.length > MAX_RANGES) {
+            return null;
+        }
+
+        List<ByteRange> ranges = new ArrayList<>(specs.length);
+        for (String spec : specs) {
+            spec = spec.trim();
+            int dash = spec.indexOf('-');
+            if (dash < 0) {
+                return null;
+            }
+            try {
+                String first = spec.substring(0, dash).trim();
+                String last = spec.substring(dash + 1).trim();
+                if (first.isEmpty()) {
+                    // 后缀区间: bytes=-N 表示最后N个字节
+                    long suffix = Long.parseLong(last);
+                    if (suffix < 0) {
+                        return null;
+                    }
+                    if (suffix > 0 && totalLength > 0) {
+                        ranges.add(new ByteRange(Math.max(0, totalLength - suffix), totalLength - 1));
+                    }
+                    continue;
+                }
+                long start = Long.parseLong(first);
+                long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                if (start < 0 || end < start) {
+                    return null;
+                }
+                if (start < totalLength) {
+                    ranges.add(new ByteRange(start, Math.min(end, totalLength - 1)));
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return ranges;
+    }
+}
\ No newline at end of file
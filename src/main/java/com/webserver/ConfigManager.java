@@ -1,15 +1,49 @@
 package com.webserver;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
+/**
+ * 配置文件 server.conf 的读写。
+ * 读取都经过当前的 ConfigSnapshot，解析结果在快照内缓存；文件在程序外被修改时由监视线程
+ * 去抖后重新加载，整体替换快照并把变化的键通知给监听器，由各模块自行应用新值。
+ * 修改通过 Transaction 批量提交，整个文件写入临时文件并同步到磁盘后再原子替换，写到一半崩溃不会损坏原文件。
+ */
 public class ConfigManager {
     private static final String CONFIG_FILE = "server.conf";
-    private final Properties properties;
+    /** 配置文件格式版本，保存在 config_schema 键中，没有该键的旧文件视为版本0 */
+    static final int SCHEMA_VERSION = 1;
+    private static final String SCHEMA_KEY = "config_schema";
+    private Properties properties;
+    private volatile ConfigSnapshot snapshot;
+    private final List<Consumer<Set<String>>> listeners = new CopyOnWriteArrayList<>();
+    private WatchService watchService;
 
     public ConfigManager() {
         properties = new Properties();
         loadConfig();
+        snapshot = new ConfigSnapshot(properties);
     }
 
     private void loadConfig() {
@@ -18,6 +52,7 @@ public class ConfigManager {
             try (FileInputStream fis = new FileInputStream(configFile)) {
                 properties.load(fis);
                 System.out.println("✓ 已加载配置文件: " + CONFIG_FILE);
+                checkSchema(properties);
             } catch (IOException e) {
                 System.err.println("✗ 读取配置文件失败: " + e.getMessage());
             }
@@ -31,52 +66,780 @@ public class ConfigManager {
         properties.setProperty("web_port", "11000");
         properties.setProperty("enable_start_run", "true");
         properties.setProperty("monitor_web_status", "");
+        properties.setProperty("web_executor", "virtual");
+        properties.setProperty("web_pool_size", String.valueOf(defaultPoolSize()));
         saveConfig();
     }
 
-    public void saveConfig() {
-        try (FileOutputStream fos = new FileOutputStream(CONFIG_FILE)) {
-            properties.store(fos, "Web服务器配置文件");
+    public synchronized void saveConfig() {
+        try {
+            write(properties);
             System.out.println("✓ 配置文件已保存: " + CONFIG_FILE);
         } catch (IOException e) {
             System.err.println("✗ 保存配置文件失败: " + e.getMessage());
         }
     }
 
-    public int getWebPort() {
+    /**
+     * 原子写入：写同目录下的临时文件并同步到磁盘，再改名替换配置文件。
+     * 任何时刻读到的都是完整的旧文件或完整的新文件，替换后保留原文件的权限。写入前在 values 中记上当前格式版本
+     */
+    private static void write(Properties values) throws IOException {
+        values.setProperty(SCHEMA_KEY, String.valueOf(SCHEMA_VERSION));
+        Path target = Paths.get(CONFIG_FILE).toAbsolutePath();
+        Path directory = target.getParent();
+        Path temp = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                values.store(Channels.newOutputStream(channel), "Web服务器配置文件");
+                channel.force(true);
+            }
+            FilePermissions.inherit(temp, target);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        // 改名本身要等目录同步后才持久，部分系统(如 Windows)不能打开目录，忽略
+        try (FileChannel dir = FileChannel.open(directory, StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException ignored) {
+        }
+    }
+
+    private static void checkSchema(Properties loaded) {
+        String version = loaded.getProperty(SCHEMA_KEY, "0").trim();
+        try {
+            if (Integer.parseInt(version) <= SCHEMA_VERSION) {
+                return;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        System.err.println("⚠ 配置文件格式版本 " + version + " 不是本程序支持的版本 " + SCHEMA_VERSION
+                + "，无法识别的配置项将被忽略");
+    }
+
+    /**
+     * 开始一个修改事务，commit 前的修改不可见
+     */
+    public Transaction begin() {
+        return new Transaction();
+    }
+
+    /**
+     * 一组配置修改。commit 时在当前配置上应用全部修改，一次原子写入文件，监听器只收到一次通知；
+     * 写入失败时内存和文件中的配置都不变
+     */
+    public class Transaction {
+        private final Map<String, String> changes = new LinkedHashMap<>();
+
+        public Transaction set(String key, String value) {
+            changes.put(key, value);
+            return this;
+        }
+
+        public Transaction setWebPort(int port) {
+            return set("web_port", String.valueOf(port));
+        }
+
+        public Transaction setStartRunEnabled(boolean enabled) {
+            return set("enable_start_run", String.valueOf(enabled));
+        }
+
+        public Transaction setMonitorWebStatus(String url) {
+            return set("monitor_web_status", url);
+        }
+
+        public boolean isEmpty() {
+            return changes.isEmpty();
+        }
+
+        /**
+         * 提交修改，返回是否写入成功
+         */
+        public boolean commit() {
+            Set<String> changed;
+            synchronized (ConfigManager.this) {
+                Properties updated = new Properties();
+                updated.putAll(properties);
+                changes.forEach(updated::setProperty);
+                try {
+                    write(updated);
+                } catch (IOException e) {
+                    System.err.println("✗ 保存配置文件失败，修改未生效: " + e.getMessage());
+                    return false;
+                }
+                System.out.println("✓ 配置文件已保存: " + CONFIG_FILE + " (" + changes.size() + " 项修改)");
+                ConfigSnapshot next = new ConfigSnapshot(updated);
+                changed = next.changedKeys(snapshot);
+                properties = updated;
+                snapshot = next;
+            }
+            changes.clear();
+            notifyListeners(changed);
+            return true;
+        }
+    }
+
+    /**
+     * 注册配置变化监听器，参数是值发生变化的键。在修改配置的线程上同步调用
+     */
+    public void addChangeListener(Consumer<Set<String>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * 开始监视配置文件，config_watch=false 时不监视
+     */
+    public synchronized void startWatching() {
+        if (watchService != null || !isConfigWatchEnabled()) {
+            return;
+        }
+        Path file = Paths.get(CONFIG_FILE).toAbsolutePath();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            // 监视所在目录而不是文件本身，编辑器保存时常常是写临时文件再改名替换
+            file.getParent().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.err.println("✗ 无法监视配置文件，修改后需重启程序: " + e.getMessage());
+            watchService = null;
+            return;
+        }
+        WatchService watcher = watchService;
+        Thread thread = new Thread(() -> watchLoop(watcher, file.getFileName()), "config-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stopWatching() {
+        if (watchService == null) {
+            return;
+        }
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+        watchService = null;
+    }
+
+    private void watchLoop(WatchService watcher, Path fileName) {
+        long debounceMillis = getConfigReloadDebounceMillis();
         try {
-            String portStr = properties.getProperty("web_port", "11000").trim();
+            while (true) {
+                if (!touches(watcher.take(), fileName)) {
+                    continue;
+                }
+                // 一次保存往往产生多个事件，等文件安静 debounceMillis 后只加载一次
+                WatchKey key;
+                while ((key = watcher.poll(debounceMillis, TimeUnit.MILLISECONDS)) != null) {
+                    touches(key, fileName);
+                }
+                reload();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopWatching
+        }
+    }
+
+    private static boolean touches(WatchKey key, Path fileName) {
+        boolean matched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                matched = true;
+            }
+        }
+        key.reset();
+        return matched;
+    }
+
+    /**
+     * 重新读取配置文件。读取失败时保留当前配置；值没有变化(包括本程序自己保存)时什么也不做。
+     * 读文件和替换快照在同一把锁内完成，否则读完之后提交的事务会被这次读到的旧内容覆盖
+     */
+    public void reload() {
+        Set<String> changed;
+        synchronized (this) {
+            Properties loaded = new Properties();
+            try (FileInputStream fis = new FileInputStream(CONFIG_FILE)) {
+                loaded.load(fis);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("✗ 重新加载配置文件失败，继续使用当前配置: " + e.getMessage());
+                return;
+            }
+            checkSchema(loaded);
+            ConfigSnapshot next = new ConfigSnapshot(loaded);
+            changed = next.changedKeys(snapshot);
+            if (changed.isEmpty()) {
+                return;
+            }
+            properties = loaded;
+            snapshot = next;
+        }
+        System.out.println("🔄 配置已重新加载: " + String.join(", ", changed));
+        notifyListeners(changed);
+    }
+
+    private void notifyListeners(Set<String> changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+        for (Consumer<Set<String>> listener : listeners) {
+            try {
+                listener.accept(changed);
+            } catch (RuntimeException e) {
+                System.err.println("✗ 应用新配置时出错: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isConfigWatchEnabled() {
+        return getBoolean("config_watch", true);
+    }
+
+    /**
+     * 配置文件最后一次变化后等待多久(毫秒)再重新加载，编辑器一次保存可能触发多个事件
+     */
+    public int getConfigReloadDebounceMillis() {
+        return getPositiveInt("config_reload_debounce_ms", 300);
+    }
+
+    public int getWebPort() {
+        return snapshot.parse("web_port", "11000", portStr -> {
             if (portStr.isEmpty()) {
                 return 11000;
             }
-            return Integer.parseInt(portStr);
-        } catch (NumberFormatException e) {
-            System.err.println("✗ 端口配置无效，使用默认端口11000");
-            return 11000;
-        }
+            try {
+                return Integer.parseInt(portStr);
+            } catch (NumberFormatException e) {
+                System.err.println("✗ 端口配置无效，使用默认端口11000");
+                return 11000;
+            }
+        });
     }
 
     public boolean isStartRunEnabled() {
-        String enabled = properties.getProperty("enable_start_run", "true");
-        return "true".equalsIgnoreCase(enabled.trim());
+        return getBoolean("enable_start_run", true);
+    }
+
+    /**
+     * 脚本工作进程数，默认等于CPU核数
+     */
+    public int getScriptWorkers() {
+        return getPositiveInt("script_workers", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * 第一个工作进程的 WORKER_PORT，之后的进程依次加1
+     */
+    public int getScriptBasePort() {
+        int port = getPositiveInt("script_base_port", 12000);
+        if (port > 65535) {
+            System.err.println("✗ script_base_port配置无效，使用默认值12000");
+            return 12000;
+        }
+        return port;
+    }
+
+    /**
+     * 工作进程退出后的重启策略: always(总是), on-failure(退出码非0时), never(不重启)
+     */
+    public String getScriptRestart() {
+        return snapshot.parse("script_restart", "on-failure", value -> {
+            String policy = value.toLowerCase();
+            switch (policy) {
+                case "always":
+                case "on-failure":
+                case "never":
+                    return policy;
+                default:
+                    System.err.println("✗ script_restart配置无效，使用默认值on-failure");
+                    return "on-failure";
+            }
+        });
+    }
+
+    public int getScriptBackoffInitialMillis() {
+        return getPositiveInt("script_backoff_initial_ms", 1000);
+    }
+
+    public int getScriptBackoffMaxSeconds() {
+        return getPositiveInt("script_backoff_max_seconds", 60);
+    }
+
+    /**
+     * 运行超过这个时长后退出视为偶发故障，重启退避从头开始
+     */
+    public int getScriptStableSeconds() {
+        return getPositiveInt("script_stable_seconds", 30);
+    }
+
+    /**
+     * 在 script_crash_loop_window_seconds 内退出超过这个次数时停止自动重启
+     */
+    public int getScriptCrashLoopRestarts() {
+        return getPositiveInt("script_crash_loop_restarts", 5);
+    }
+
+    public int getScriptCrashLoopWindowSeconds() {
+        return getPositiveInt("script_crash_loop_window_seconds", 120);
+    }
+
+    /**
+     * 脚本输出缓冲区大小(KB)，写满后覆盖最早的输出
+     */
+    public int getScriptLogBufferKilobytes() {
+        return getPositiveInt("script_log_buffer_kb", 1024);
+    }
+
+    /**
+     * 每秒最多回显到控制台的脚本输出行数
+     */
+    public int getScriptLogEchoLines() {
+        return getPositiveInt("script_log_echo_lines", 200);
+    }
+
+    /**
+     * 脚本输出接口的上下文路径，必须以 / 开头
+     */
+    public String getScriptLogPath() {
+        return snapshot.parse("script_log_path", "/logs", path -> {
+            if (!path.startsWith("/") || path.length() < 2) {
+                System.err.println("✗ script_log_path配置无效，使用默认值/logs");
+                return "/logs";
+            }
+            return path;
+        });
+    }
+
+    /**
+     * 同时实时跟随脚本输出的最大连接数
+     */
+    public int getScriptLogMaxFollowers() {
+        return getPositiveInt("script_log_max_followers", 8);
+    }
+
+    /**
+     * 工作进程资源采样间隔(秒)
+     */
+    public int getScriptSampleSeconds() {
+        return getPositiveInt("script_sample_seconds", 5);
+    }
+
+    /**
+     * 单个工作进程(含子进程)的内存软限制(MB)，未设置时不检查
+     */
+    public int getScriptRssLimitMegabytes() {
+        return getPositiveInt("script_rss_limit_mb", 0);
+    }
+
+    /**
+     * 单个工作进程(含子进程)的CPU软限制(%，单核满载为100)，未设置时不检查
+     */
+    public int getScriptCpuLimitPercent() {
+        return getPositiveInt("script_cpu_limit_percent", 0);
+    }
+
+    /**
+     * 连续多少次采样超过软限制后处理，避免短暂的峰值触发
+     */
+    public int getScriptLimitSamples() {
+        return getPositiveInt("script_limit_samples", 3);
+    }
+
+    /**
+     * 超过软限制时的处理: warn(只告警), restart(重启该工作进程)
+     */
+    public String getScriptLimitAction() {
+        return snapshot.parse("script_limit_action", "warn", value -> {
+            String action = value.toLowerCase();
+            switch (action) {
+                case "warn":
+                case "restart":
+                    return action;
+                default:
+                    System.err.println("✗ script_limit_action配置无效，使用默认值warn");
+                    return "warn";
+            }
+        });
+    }
+
+    /**
+     * 工作进程就绪检查: tcp, http:/path 或 log:正则，未设置时进程启动即视为就绪。
+     * 格式错误时返回 null 并提示
+     */
+    public HealthCheck getScriptReadyCheck() {
+        return snapshot.parse("script_ready_check", "", spec -> {
+            if (spec.isEmpty()) {
+                return null;
+            }
+            try {
+                return HealthCheck.parse(spec);
+            } catch (IllegalArgumentException e) {
+                System.err.println("✗ script_ready_check配置无效，不做就绪检查: " + e.getMessage());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 启动后多久内未就绪视为启动失败，按一次退出处理并重启
+     */
+    public int getScriptReadyTimeoutSeconds() {
+        return getPositiveInt("script_ready_timeout_seconds", 30);
+    }
+
+    /**
+     * 就绪后按这个间隔重复检查(存活检查)，日志检查没有存活检查
+     */
+    public int getScriptLiveIntervalSeconds() {
+        return getPositiveInt("script_live_interval_seconds", 10);
+    }
+
+    /**
+     * 连续多少次存活检查失败后重启
+     */
+    public int getScriptLiveFailures() {
+        return getPositiveInt("script_live_failures", 3);
+    }
+
+    /**
+     * 单次检查的超时(毫秒)
+     */
+    public int getScriptCheckTimeoutMillis() {
+        return getPositiveInt("script_check_timeout_ms", 1000);
     }
 
     public String getMonitorWebStatus() {
-        return properties.getProperty("monitor_web_status", "").trim();
+        return snapshot.get("monitor_web_status", "");
+    }
+
+    /**
+     * 未在目标上单独指定 interval 时的检查间隔
+     */
+    public int getMonitorIntervalSeconds() {
+        return getPositiveInt("monitor_interval_seconds", 5);
+    }
+
+    /**
+     * 未在目标上单独指定 timeout 时的探测超时，包括连接和读取
+     */
+    public int getMonitorTimeoutSeconds() {
+        return getPositiveInt("monitor_timeout_seconds", 5);
+    }
+
+    /**
+     * 首次失败后快速复查的间隔(毫秒)
+     */
+    public int getMonitorRecheckMillis() {
+        return getPositiveInt("monitor_recheck_ms", 1000);
+    }
+
+    /**
+     * 连续失败超过该次数才确认故障并开始退避
+     */
+    public int getMonitorConfirmChecks() {
+        return getPositiveInt("monitor_confirm_checks", 2);
+    }
+
+    /**
+     * 故障目标退避后的最大检查间隔
+     */
+    public int getMonitorBackoffMaxSeconds() {
+        return getPositiveInt("monitor_backoff_max_seconds", 300);
+    }
+
+    /**
+     * 检查间隔的随机抖动幅度(百分比)
+     */
+    public int getMonitorJitterPercent() {
+        return getPositiveInt("monitor_jitter_percent", 10);
+    }
+
+    /**
+     * 所有目标合计每秒最多发出的探测数
+     */
+    public int getMonitorProbeBudget() {
+        return getPositiveInt("monitor_probe_budget", 20);
+    }
+
+    public boolean isMonitorHistoryEnabled() {
+        return getBoolean("monitor_history_enabled", true);
+    }
+
+    public String getMonitorHistoryDir() {
+        String dir = snapshot.get("monitor_history_dir", "");
+        return dir.isEmpty() ? "data/monitor" : dir;
+    }
+
+    /**
+     * 原始探测记录保留天数，超过后只保留分钟汇总
+     */
+    public int getMonitorHistoryRawDays() {
+        return getPositiveInt("monitor_history_raw_days", 7);
+    }
+
+    /**
+     * 分钟汇总保留天数
+     */
+    public int getMonitorHistoryDays() {
+        return getPositiveInt("monitor_history_days", 365);
+    }
+
+    public boolean isProxyEnabled() {
+        return getBoolean("proxy_enabled", true);
+    }
+
+    /**
+     * 转发给脚本工作进程的上下文路径，必须以 / 开头
+     */
+    public String getProxyPath() {
+        return snapshot.parse("proxy_path", "/api", path -> {
+            if (!path.startsWith("/") || path.length() < 2) {
+                System.err.println("✗ proxy_path配置无效，使用默认值/api");
+                return "/api";
+            }
+            return path;
+        });
+    }
+
+    public int getProxyConnectTimeoutMillis() {
+        return getPositiveInt("proxy_connect_timeout_ms", 1000);
+    }
+
+    /**
+     * 转发后等待后端返回响应头的最长时间，响应体的传输不受限制
+     */
+    public int getProxyTimeoutSeconds() {
+        return getPositiveInt("proxy_timeout_seconds", 30);
+    }
+
+    /**
+     * 请求执行模式: virtual(每请求一个虚拟线程), pool(有界平台线程池), dispatcher(单调度线程)
+     */
+    public String getWebExecutor() {
+        return snapshot.parse("web_executor", "virtual", value -> {
+            String mode = value.toLowerCase();
+            switch (mode) {
+                case "virtual":
+                case "pool":
+                case "dispatcher":
+                    return mode;
+                default:
+                    System.err.println("✗ web_executor配置无效，使用默认值virtual");
+                    return "virtual";
+            }
+        });
+    }
+
+    public int getWebPoolSize() {
+        return getPositiveInt("web_pool_size", defaultPoolSize());
+    }
+
+    public int getWebVirtualCarriers() {
+        return getPositiveInt("web_vt_carriers", Math.max(Runtime.getRuntime().availableProcessors(), 16));
+    }
+
+    public int getWebPoolQueue() {
+        return getPositiveInt("web_pool_queue", 1000);
+    }
+
+    /**
+     * 监听socket的连接队列长度，未设置时使用系统默认值
+     */
+    public int getWebBacklog() {
+        return getPositiveInt("web_backlog", 0);
+    }
+
+    /**
+     * 同时处理的请求数上限(事件流、日志跟随和指标接口不计入)
+     */
+    public int getWebMaxInFlight() {
+        return getPositiveInt("web_max_in_flight", 512);
+    }
+
+    /**
+     * 达到上限后最多排队等待的请求数，超出的请求立即返回503
+     */
+    public int getWebQueueSize() {
+        return getPositiveInt("web_queue_size", 256);
+    }
+
+    /**
+     * 排队请求的最长等待时间(毫秒)，超时返回503
+     */
+    public int getWebQueueTimeoutMillis() {
+        return getPositiveInt("web_queue_timeout_ms", 200);
+    }
+
+    /**
+     * 自适应并发上限的延迟目标(毫秒)，未设置时上限固定为 web_max_in_flight
+     */
+    public int getWebLatencyTargetMillis() {
+        return getPositiveInt("web_latency_target_ms", 0);
+    }
+
+    public boolean isWebTcpNoDelay() {
+        return getBoolean("web_tcp_nodelay", true);
+    }
+
+    public int getStaticCacheMegabytes() {
+        return getPositiveInt("static_cache_mb", 32);
+    }
+
+    public int getStaticCacheMaxFileKilobytes() {
+        return getPositiveInt("static_cache_max_file_kb", 1024);
+    }
+
+    public int getStaticCacheRevalidateMillis() {
+        return getPositiveInt("static_cache_revalidate_ms", 1000);
+    }
+
+    /**
+     * 生成压缩变体的最小文件大小，compression_enabled=false 时返回0
+     */
+    public int getCompressionMinBytes() {
+        if (!getBoolean("compression_enabled", true)) {
+            return 0;
+        }
+        return getPositiveInt("compression_min_bytes", 1024);
+    }
+
+    /**
+     * 停止或重启Web服务器时等待进行中请求完成的最长时间(秒)
+     */
+    public int getWebDrainSeconds() {
+        return getPositiveInt("web_drain_seconds", 10);
+    }
+
+    public long getUploadMaxBytes() {
+        return getPositiveInt("upload_max_mb", 10) * 1024L * 1024L;
+    }
+
+    public boolean isAccessLogEnabled() {
+        return getBoolean("access_log_enabled", true);
+    }
+
+    public String getAccessLogFile() {
+        String file = snapshot.get("access_log_file", "");
+        return file.isEmpty() ? "logs/access.log" : file;
+    }
+
+    /**
+     * 访问日志格式: common(通用日志格式), combined(附加Referer和User-Agent), json
+     */
+    public String getAccessLogFormat() {
+        return snapshot.parse("access_log_format", "combined", value -> {
+            String format = value.toLowerCase();
+            switch (format) {
+                case "common":
+                case "combined":
+                case "json":
+                    return format;
+                default:
+                    System.err.println("✗ access_log_format配置无效，使用默认值combined");
+                    return "combined";
+            }
+        });
+    }
+
+    public int getAccessLogMaxMegabytes() {
+        return getPositiveInt("access_log_max_mb", 10);
+    }
+
+    public int getAccessLogBackups() {
+        return getPositiveInt("access_log_backups", 5);
+    }
+
+    /**
+     * 访问日志环形缓冲区容量(条)，写入跟不上时超出的记录被丢弃
+     */
+    public int getAccessLogBuffer() {
+        return getPositiveInt("access_log_buffer", 8192);
+    }
+
+    public boolean isMetricsEnabled() {
+        return getBoolean("metrics_enabled", true);
+    }
+
+    /**
+     * 指标接口的上下文路径，必须以 / 开头
+     */
+    public String getMetricsPath() {
+        return snapshot.parse("metrics_path", "/metrics", path -> {
+            if (!path.startsWith("/") || path.length() < 2) {
+                System.err.println("✗ metrics_path配置无效，使用默认值/metrics");
+                return "/metrics";
+            }
+            return path;
+        });
+    }
+
+    public boolean isEventsEnabled() {
+        return getBoolean("events_enabled", true);
+    }
+
+    /**
+     * 实时事件流(SSE)的上下文路径，必须以 / 开头
+     */
+    public String getEventsPath() {
+        return snapshot.parse("events_path", "/events", path -> {
+            if (!path.startsWith("/") || path.length() < 2) {
+                System.err.println("✗ events_path配置无效，使用默认值/events");
+                return "/events";
+            }
+            return path;
+        });
+    }
+
+    public int getEventsMaxClients() {
+        return getPositiveInt("events_max_clients", 64);
+    }
+
+    /**
+     * 每个订阅者最多积压的事件数，超出时断开该订阅者
+     */
+    public int getEventsQueue() {
+        return getPositiveInt("events_queue", 256);
+    }
+
+    private int getPositiveInt(String key, int defaultValue) {
+        return snapshot.parse(key, "", value -> {
+            if (value.isEmpty()) {
+                return defaultValue;
+            }
+            try {
+                int parsed = Integer.parseInt(value);
+                if (parsed > 0) {
+                    return parsed;
+                }
+            } catch (NumberFormatException ignored) {
+            }
+            System.err.println("✗ " + key + "配置无效，使用默认值" + defaultValue);
+            return defaultValue;
+        });
+    }
+
+    private boolean getBoolean(String key, boolean defaultValue) {
+        return snapshot.parse(key, String.valueOf(defaultValue), "true"::equalsIgnoreCase);
+    }
+
+    private static int defaultPoolSize() {
+        return Math.max(Runtime.getRuntime().availableProcessors() * 4, 32);
     }
 
     public void setWebPort(int port) {
-        properties.setProperty("web_port", String.valueOf(port));
-        saveConfig();
+        begin().setWebPort(port).commit();
     }
 
     public void setStartRunEnabled(boolean enabled) {
-        properties.setProperty("enable_start_run", String.valueOf(enabled));
-        saveConfig();
+        begin().setStartRunEnabled(enabled).commit();
     }
 
     public void setMonitorWebStatus(String url) {
-        properties.setProperty("monitor_web_status", url);
-        saveConfig();
+        begin().setMonitorWebStatus(url).commit();
     }
 }
\ No newline at end of file
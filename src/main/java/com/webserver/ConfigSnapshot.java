@@ -0,0 +1,72 @@
+package com.webserver;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 某一时刻配置的只读快照。
+ * 值在创建时去掉首尾空白；解析和校验后的值按键缓存，同一快照内每个键只解析一次、只提示一次，
+ * 之后的读取只是一次哈希查找。重新加载配置时整体替换快照，已发布的快照不会被修改。
+ */
+final class ConfigSnapshot {
+    /** 解析结果为 null 时的占位，ConcurrentHashMap 不能存 null */
+    private static final Object NONE = new Object();
+
+    private final Map<String, String> values;
+    private final Map<String, Object> parsed = new ConcurrentHashMap<>();
+
+    ConfigSnapshot(Properties properties) {
+        Map<String, String> trimmed = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            trimmed.put(key, properties.getProperty(key).trim());
+        }
+        this.values = Collections.unmodifiableMap(trimmed);
+    }
+
+    /**
+     * 去掉首尾空白后的原始值，未配置时返回 defaultValue
+     */
+    String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * 用 parser 解析 key 的值(未配置时为 defaultValue)并缓存结果。parser 可以返回 null，
+     * 不能在 parser 里再读取同一个键
+     */
+    @SuppressWarnings("unchecked")
+    <T> T parse(String key, String defaultValue, Function<String, T> parser) {
+        Object value = parsed.get(key);
+        if (value == null) {
+            T result = parser.apply(get(key, defaultValue));
+            value = result != null ? result : NONE;
+            Object previous = parsed.putIfAbsent(key, value);
+            if (previous != null) {
+                value = previous;
+            }
+        }
+        return value == NONE ? null : (T) value;
+    }
+
+    /**
+     * 与 other 相比值不同的键，按名称排序
+     */
+    Set<String> changedKeys(ConfigSnapshot other) {
+        Set<String> keys = new HashSet<>(values.keySet());
+        keys.addAll(other.values.keySet());
+        Set<String> changed = new TreeSet<>();
+        for (String key : keys) {
+            if (!values.getOrDefault(key, "").equals(other.values.getOrDefault(key, ""))) {
+                changed.add(key);
+            }
+        }
+        return changed;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.webserver;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-Sent Events 的共享扇出。
+ * 每个事件只编码一次，发布时把同一个字节数组放进各订阅者的有界队列，放不进去的订阅者直接断开，
+ * 慢客户端不会拖慢发布方也不会让内存无限增长。每个 key 保留最新一条事件，新订阅者先收到这些事件作为完整快照，
+ * 之后只收增量。
+ */
+public class EventHub {
+    /** 断开订阅者时放入队列的标记 */
+    static final byte[] CLOSE = new byte[0];
+
+    private final int maxSubscribers;
+    private final int queueCapacity;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Map<String, byte[]> latest = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong droppedSubscribers = new AtomicLong();
+
+    public EventHub(int maxSubscribers, int queueCapacity) {
+        this.maxSubscribers = maxSubscribers;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 发布一条事件
+     *
+     * @param type 事件类型，对应浏览器端 addEventListener 的名字
+     * @param key  状态键，同一个 key 的新事件替换快照里的旧事件
+     * @param json 事件数据，必须是单行JSON
+     */
+    public void publish(String type, String key, String json) {
+        String frame = "event: " + type + "\ndata: " + json + "\n\n";
+        synchronized (this) {
+            byte[] bytes = ("id: " + nextId.incrementAndGet() + "\n" + frame).getBytes(StandardCharsets.UTF_8);
+            latest.put(key, bytes);
+            published.incrementAndGet();
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.queue.offer(bytes)) {
+                    drop(subscriber);
+                }
+            }
+        }
+    }
+
+    /**
+     * 新订阅者，超过上限时返回 null
+     */
+    public synchronized Subscriber subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            return null;
+        }
+        Subscriber subscriber = new Subscriber(Math.max(queueCapacity, latest.size() + 1));
+        subscriber.queue.addAll(latest.values());
+        subscribers.add(subscriber);
+        return subscriber;
+    }
+
+    public void unsubscribe(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    /**
+     * 断开所有订阅者，Web服务器停止或重启前调用，避免长连接拖住排空
+     */
+    public synchronized void disconnectAll() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        subscribers.clear();
+    }
+
+    private void drop(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.close();
+        droppedSubscribers.incrementAndGet();
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    /**
+     * 因队列满被断开的订阅者数
+     */
+    public long getDroppedSubscribers() {
+        return droppedSubscribers.get();
+    }
+
+    /**
+     * 一个订阅连接的待发送事件
+     */
+    public static class Subscriber {
+        private final ArrayBlockingQueue<byte[]> queue;
+
+        Subscriber(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        /**
+         * 等待下一条事件，超时返回 null，被断开时返回 CLOSE
+         */
+        public byte[] next(long timeoutMillis) throws InterruptedException {
+            return queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 不等待地取下一条事件，用于把已经排队的事件合并到一次 flush
+         */
+        public byte[] poll() {
+            return queue.poll();
+        }
+
+        void close() {
+            queue.clear();
+            queue.offer(CLOSE);
+        }
+    }
+
+    /**
+     * 拼接单行JSON对象
+     */
+    public static class Json {
+        private final StringBuilder sb = new StringBuilder("{");
+
+        public Json put(String name, String value) {
+            field(name);
+            if (value == null) {
+                sb.append("null");
+            } else {
+                quote(value);
+            }
+            return this;
+        }
+
+        public Json put(String name, long value) {
+            field(name);
+            sb.append(value);
+            return this;
+        }
+
+        /**
+         * NaN 和无穷大输出为 null
+         */
+        public Json put(String name, double value) {
+            field(name);
+            if (Double.isNaN(value) || Double.isInfinite(value)) {
+                sb.append("null");
+            } else {
+                sb.append(Math.round(value * 1000) / 1000.0);
+            }
+            return this;
+        }
+
+        public Json put(String name, boolean value) {
+            field(name);
+            sb.append(value);
+            return this;
+        }
+
+        private void field(String name) {
+            if (sb.length() > 1) {
+                sb.append(',');
+            }
+            quote(name);
+            sb.append(':');
+        }
+
+        private void quote(String value) {
+            sb.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    sb.append('\\').append(c);
+                } else if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+            sb.append('"');
+        }
+
+        @Override
+        public String toString() {
+            return sb + "}";
+        }
+    }
+}
\ No newline at end of file
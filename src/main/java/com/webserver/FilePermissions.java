@@ -0,0 +1,38 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * 用临时文件改名替换目标文件前，把目标文件的 POSIX 权限复制到临时文件上。
+ * Files.createTempFile 创建的文件是 0600，直接替换后其他用户(如前置代理)就读不到了。
+ */
+final class FilePermissions {
+    /** 目标文件还不存在时使用的权限 */
+    private static final Set<PosixFilePermission> DEFAULT = PosixFilePermissions.fromString("rw-r--r--");
+
+    private FilePermissions() {
+    }
+
+    /**
+     * 非 POSIX 文件系统(如 Windows)上什么也不做
+     */
+    static void inherit(Path temp, Path target) throws IOException {
+        if (!Files.getFileStore(temp).supportsFileAttributeView(PosixFileAttributeView.class)) {
+            return;
+        }
+        Set<PosixFilePermission> permissions;
+        try {
+            permissions = Files.getPosixFilePermissions(target);
+        } catch (NoSuchFileException e) {
+            permissions = DEFAULT;
+        }
+        Files.setPosixFilePermissions(temp, permissions);
+    }
+}
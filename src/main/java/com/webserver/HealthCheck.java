@@ -0,0 +1,93 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * 工作进程的就绪/存活检查。
+ * 配置格式: tcp(能连上 WORKER_PORT), http:/path(GET 返回 2xx/3xx), log:正则(输出中出现匹配的行)。
+ * 日志检查只能判断就绪，之后的存活只看进程是否还在。
+ */
+public class HealthCheck {
+    public enum Type {
+        TCP, HTTP, LOG
+    }
+
+    private final Type type;
+    private final String path;
+    private final Pattern pattern;
+    private final String spec;
+
+    private HealthCheck(Type type, String path, Pattern pattern, String spec) {
+        this.type = type;
+        this.path = path;
+        this.pattern = pattern;
+        this.spec = spec;
+    }
+
+    /**
+     * 解析配置，格式错误时抛出 IllegalArgumentException
+     */
+    public static HealthCheck parse(String spec) {
+        String trimmed = spec.trim();
+        if (trimmed.equalsIgnoreCase("tcp")) {
+            return new HealthCheck(Type.TCP, null, null, trimmed);
+        }
+        if (trimmed.regionMatches(true, 0, "http:", 0, 5)) {
+            String path = trimmed.substring(5);
+            if (!path.startsWith("/")) {
+                throw new IllegalArgumentException("HTTP检查的路径必须以 / 开头: " + spec);
+            }
+            URI.create("http://127.0.0.1" + path);
+            return new HealthCheck(Type.HTTP, path, null, trimmed);
+        }
+        if (trimmed.regionMatches(true, 0, "log:", 0, 4) && trimmed.length() > 4) {
+            try {
+                return new HealthCheck(Type.LOG, null, Pattern.compile(trimmed.substring(4)), trimmed);
+            } catch (PatternSyntaxException e) {
+                throw new IllegalArgumentException("日志检查的正则无效: " + e.getDescription());
+            }
+        }
+        throw new IllegalArgumentException("未知的检查: " + spec + " (可用 tcp, http:/path, log:正则)");
+    }
+
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * 日志检查的正则，其他类型返回 null
+     */
+    public Pattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * 检查本机 port 上的工作进程，日志检查总是返回 false，由输出读取线程判断
+     */
+    public boolean check(int port, long timeoutMillis) {
+        switch (type) {
+            case TCP:
+                try (Socket socket = new Socket()) {
+                    socket.connect(new InetSocketAddress("127.0.0.1", port), (int) timeoutMillis);
+                    return true;
+                } catch (IOException e) {
+                    return false;
+                }
+            case HTTP:
+                HttpProbe.Result result = HttpProbe.run(URI.create("http://127.0.0.1:" + port + path), timeoutMillis);
+                return result.outcome == ProbeOutcome.OK && result.statusCode < 400;
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
\ No newline at end of file
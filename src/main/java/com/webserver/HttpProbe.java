@@ -0,0 +1,405 @@
+package com.webserver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * 单次HTTP探测。每次用新连接，分别计时 DNS解析、TCP连接、TLS握手、首字节(TTFB)和下载；
+ * HttpClient 复用连接且不暴露这些阶段，所以这里直接在 socket 上收发。
+ * 响应体边读边计算 CRC32C 和 SHA-256，不缓存内容，可按目标配置校验摘要和大小。
+ * 整个探测共享一个截止时间；DNS解析使用系统解析器，不受截止时间限制。
+ */
+public class HttpProbe {
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_LINE_BYTES = 8 * 1024;
+    private static final int MAX_HEADER_LINES = 100;
+    private static final HexFormat HEX = HexFormat.of();
+    private static final Map<Path, FileDigest> FILE_DIGESTS = new ConcurrentHashMap<>();
+
+    private HttpProbe() {
+    }
+
+    /**
+     * 发送 GET 请求并读完响应体，出错时记录在结果里而不抛出
+     */
+    public static Result run(URI uri, long timeoutMillis) {
+        Result result = new Result();
+        long start = System.nanoTime();
+        long deadline = start + timeoutMillis * 1_000_000L;
+        boolean https = "https".equalsIgnoreCase(uri.getScheme());
+        String host = uri.getHost();
+        int port = uri.getPort() > 0 ? uri.getPort() : (https ? 443 : 80);
+        Socket socket = null;
+        try {
+            long phase = System.nanoTime();
+            InetAddress address = InetAddress.getByName(host);
+            result.dnsNanos = System.nanoTime() - phase;
+            result.remoteAddress = address.getHostAddress();
+
+            phase = System.nanoTime();
+            socket = new Socket();
+            socket.connect(new InetSocketAddress(address, port), remainingMillis(deadline));
+            socket.setTcpNoDelay(true);
+            result.connectNanos = System.nanoTime() - phase;
+
+            if (https) {
+                phase = System.nanoTime();
+                SSLSocket ssl = (SSLSocket) ((SSLSocketFactory) SSLSocketFactory.getDefault())
+                        .createSocket(socket, host, port, true);
+                SSLParameters parameters = ssl.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                ssl.setSSLParameters(parameters);
+                ssl.setSoTimeout(remainingMillis(deadline));
+                ssl.startHandshake();
+                result.tlsNanos = System.nanoTime() - phase;
+                socket = ssl;
+            }
+
+            OutputStream out = socket.getOutputStream();
+            out.write(request(uri, host, port, https));
+            out.flush();
+            long sent = System.nanoTime();
+
+            ResponseReader in = new ResponseReader(socket, deadline);
+            in.fill();
+            long firstByte = System.nanoTime();
+            result.ttfbNanos = firstByte - sent;
+            readResponse(in, result);
+            result.downloadNanos = System.nanoTime() - firstByte;
+            result.outcome = result.truncated ? ProbeOutcome.CONTENT : ProbeOutcome.ofStatus(result.statusCode);
+        } catch (IOException | RuntimeException e) {
+            result.outcome = ProbeOutcome.classify(e);
+            result.detail = e.getMessage();
+        } finally {
+            result.totalNanos = System.nanoTime() - start;
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+        return result;
+    }
+
+    private static byte[] request(URI uri, String host, int port, boolean https) {
+        String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+        if (uri.getRawQuery() != null) {
+            path += "?" + uri.getRawQuery();
+        }
+        boolean defaultPort = port == (https ? 443 : 80);
+        String hostHeader = (host.contains(":") ? "[" + host + "]" : host) + (defaultPort ? "" : ":" + port);
+        return ("GET " + path + " HTTP/1.1\r\n"
+                + "Host: " + hostHeader + "\r\n"
+                + "User-Agent: WebServerMonitor/1.0\r\n"
+                + "Accept-Encoding: identity\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static void readResponse(ResponseReader in, Result result) throws IOException {
+        Map<String, String> headers;
+        do {
+            String statusLine = in.readLine();
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new IOException("无效的状态行: " + statusLine);
+            }
+            try {
+                result.statusCode = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("无效的状态行: " + statusLine);
+            }
+            headers = readHeaders(in);
+        } while (result.statusCode >= 100 && result.statusCode < 200);
+
+        result.contentType = headers.get("content-type");
+        result.serverHeader = headers.get("server");
+        String length = headers.get("content-length");
+        result.contentLength = length != null ? Long.parseLong(length.trim()) : -1;
+
+        BodyDigest digest = new BodyDigest();
+        if (result.statusCode == 204 || result.statusCode == 304) {
+            result.contentLength = 0;
+        } else if (headers.getOrDefault("transfer-encoding", "").toLowerCase(Locale.ROOT).contains("chunked")) {
+            readChunked(in, digest, result);
+        } else if (result.contentLength >= 0) {
+            long copied = in.copy(result.contentLength, digest);
+            result.truncated = copied < result.contentLength;
+        } else {
+            in.copy(Long.MAX_VALUE, digest);
+        }
+        result.bodyBytes = digest.bytes;
+        result.crc32c = String.format("%08x", digest.crc.getValue());
+        result.sha256 = HEX.formatHex(digest.sha256.digest());
+        if (result.truncated) {
+            result.detail = "响应体不完整: 收到 " + result.bodyBytes
+                    + (result.contentLength >= 0 ? " / " + result.contentLength : "") + " 字节";
+        }
+    }
+
+    private static Map<String, String> readHeaders(ResponseReader in) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        for (int i = 0; i < MAX_HEADER_LINES; i++) {
+            String line = in.readLine();
+            if (line.isEmpty()) {
+                return headers;
+            }
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.putIfAbsent(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+            }
+        }
+        throw new IOException("响应头过多");
+    }
+
+    private static void readChunked(ResponseReader in, BodyDigest digest, Result result) throws IOException {
+        while (true) {
+            String sizeLine;
+            try {
+                sizeLine = in.readLine();
+            } catch (EOFException e) {
+                result.truncated = true;
+                return;
+            }
+            int extension = sizeLine.indexOf(';');
+            long size = Long.parseLong((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+            if (size == 0) {
+                readHeaders(in);
+                return;
+            }
+            if (in.copy(size, digest) < size) {
+                result.truncated = true;
+                return;
+            }
+            in.readLine();
+        }
+    }
+
+    /**
+     * 按目标配置的期望值校验响应体，只对状态正常且完整的响应校验
+     */
+    public static void verify(Result result, MonitorTarget target) {
+        if (result.outcome != ProbeOutcome.OK) {
+            return;
+        }
+        if (target.expectedSize() >= 0 && result.bodyBytes != target.expectedSize()) {
+            fail(result, "大小不匹配: 期望 " + target.expectedSize() + " 字节, 实际 " + result.bodyBytes + " 字节");
+            return;
+        }
+        if (target.expectedCrc32c() != null && !target.expectedCrc32c().equalsIgnoreCase(result.crc32c)) {
+            fail(result, "CRC32C 不匹配: 期望 " + target.expectedCrc32c() + ", 实际 " + result.crc32c);
+            return;
+        }
+        String expectedSha256 = target.expectedSha256();
+        if (expectedSha256 == null) {
+            return;
+        }
+        if (expectedSha256.startsWith("file:")) {
+            try {
+                expectedSha256 = sha256Of(Paths.get(expectedSha256.substring("file:".length())));
+            } catch (IOException e) {
+                fail(result, "无法计算期望摘要: " + e.getMessage());
+                return;
+            }
+        }
+        result.verified = true;
+        if (!expectedSha256.equalsIgnoreCase(result.sha256)) {
+            fail(result, "SHA-256 不匹配: 期望 " + abbreviate(expectedSha256) + ", 实际 " + abbreviate(result.sha256));
+        }
+    }
+
+    private static void fail(Result result, String detail) {
+        result.outcome = ProbeOutcome.CONTENT;
+        result.detail = detail;
+        result.verified = true;
+    }
+
+    /**
+     * 本地文件的 SHA-256，按修改时间和大小缓存，文件被原子替换后重新计算
+     */
+    static String sha256Of(Path file) throws IOException {
+        Path key = file.toAbsolutePath().normalize();
+        long modified = Files.getLastModifiedTime(key).toMillis();
+        long size = Files.size(key);
+        FileDigest cached = FILE_DIGESTS.get(key);
+        if (cached != null && cached.modified == modified && cached.size == size) {
+            return cached.sha256;
+        }
+        BodyDigest digest = new BodyDigest();
+        try (InputStream in = Files.newInputStream(key)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        String sha256 = HEX.formatHex(digest.sha256.digest());
+        FILE_DIGESTS.put(key, new FileDigest(modified, size, sha256));
+        return sha256;
+    }
+
+    static String abbreviate(String hex) {
+        return hex != null && hex.length() > 16 ? hex.substring(0, 16) + "…" : hex;
+    }
+
+    private static int remainingMillis(long deadline) throws SocketTimeoutException {
+        long remaining = (deadline - System.nanoTime()) / 1_000_000L;
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("探测超时");
+        }
+        return (int) Math.min(remaining, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 一次探测的结果，各阶段耗时为纳秒，未经过的阶段为0
+     */
+    static class Result {
+        ProbeOutcome outcome = ProbeOutcome.OTHER;
+        String detail;
+        String remoteAddress;
+        int statusCode = -1;
+        long contentLength = -1;
+        String contentType;
+        String serverHeader;
+        long dnsNanos;
+        long connectNanos;
+        long tlsNanos;
+        long ttfbNanos;
+        long downloadNanos;
+        long totalNanos;
+        long bodyBytes;
+        boolean truncated;
+        boolean verified;
+        String crc32c;
+        String sha256;
+
+        long totalMillis() {
+            return totalNanos / 1_000_000L;
+        }
+    }
+
+    private static class BodyDigest {
+        private final CRC32C crc = new CRC32C();
+        private final MessageDigest sha256;
+        private long bytes;
+
+        BodyDigest() {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        void update(byte[] buffer, int offset, int length) {
+            crc.update(buffer, offset, length);
+            sha256.update(buffer, offset, length);
+            bytes += length;
+        }
+    }
+
+    private static class FileDigest {
+        private final long modified;
+        private final long size;
+        private final String sha256;
+
+        FileDigest(long modified, long size, String sha256) {
+            this.modified = modified;
+            this.size = size;
+            this.sha256 = sha256;
+        }
+    }
+
+    /**
+     * 带缓冲的响应读取，每次读 socket 前按剩余时间设置超时
+     */
+    private static class ResponseReader {
+        private final Socket socket;
+        private final InputStream in;
+        private final long deadline;
+        private final byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+
+        ResponseReader(Socket socket, long deadline) throws IOException {
+            this.socket = socket;
+            this.in = socket.getInputStream();
+            this.deadline = deadline;
+        }
+
+        /**
+         * 缓冲区读空时从 socket 读取，连接关闭返回 false
+         */
+        boolean fill() throws IOException {
+            if (position < limit) {
+                return true;
+            }
+            socket.setSoTimeout(remainingMillis(deadline));
+            int n = in.read(buffer);
+            if (n <= 0) {
+                return false;
+            }
+            position = 0;
+            limit = n;
+            return true;
+        }
+
+        String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            while (true) {
+                if (!fill()) {
+                    throw new EOFException("连接在响应结束前关闭");
+                }
+                byte b = buffer[position++];
+                if (b == '\n') {
+                    int length = line.length();
+                    if (length > 0 && line.charAt(length - 1) == '\r') {
+                        line.setLength(length - 1);
+                    }
+                    return line.toString();
+                }
+                if (line.length() >= MAX_LINE_BYTES) {
+                    throw new IOException("响应头行过长");
+                }
+                line.append((char) (b & 0xff));
+            }
+        }
+
+        /**
+         * 把最多 max 字节交给摘要，返回实际读到的字节数
+         */
+        long copy(long max, BodyDigest digest) throws IOException {
+            long copied = 0;
+            while (copied < max && fill()) {
+                int n = (int) Math.min(limit - position, max - copied);
+                digest.update(buffer, position, n);
+                position += n;
+                copied += n;
+            }
+            return copied;
+        }
+    }
+}
\ No newline at end of file
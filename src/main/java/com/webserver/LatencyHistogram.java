@@ -0,0 +1,172 @@
+package com.webserver;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数线性分桶的延迟直方图（HDR风格）。
+ * 每个2的幂区间再均分为16个子桶，相对误差不超过1/16；小于16的值每个值一个桶。
+ * 记录只做位运算和 LongAdder 累加（条带化计数，多线程记录不争用同一缓存行），不分配对象。
+ * 数值单位由调用方决定，WebServer 中为微秒。
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    /** 可记录的最大值为 2^40-1，约12.7天（微秒），更大的值记入最后一个桶 */
+    private static final int MAX_EXPONENT = 39;
+    private static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets[indexOf(value)].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    public void reset() {
+        for (LongAdder bucket : buckets) {
+            bucket.reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+        return new Snapshot(counts, total, sum.sum(), max.get());
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶内可能出现的最大值
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lower + width - 1;
+    }
+
+    /**
+     * 某一时刻的直方图副本。各计数分别读取，并发记录时总数与桶计数之间可能有极小偏差。
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sum() {
+            return sum;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        public double mean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * 分位数对应的值（所在桶的上界，不超过记录到的最大值），quantile 取 0~1
+         */
+        public long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * 协调遗漏校正（与 HdrHistogram 的 copyCorrectedForCoordinatedOmission 相同）：
+         * 闭环压测中一个慢响应会推迟同一连接后续请求的发出，这些"本应发出"的请求没有被测到。
+         * 对每个大于期望间隔的值，按间隔递减补记 value-interval、value-2*interval... 直到不大于间隔。
+         */
+        public Snapshot correctedFor(long expectedInterval) {
+            if (expectedInterval <= 0) {
+                return this;
+            }
+            long[] corrected = counts.clone();
+            long correctedCount = count;
+            long correctedSum = sum;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    continue;
+                }
+                long value = Math.min(upperBoundOf(i), max);
+                for (long missing = value - expectedInterval; missing >= expectedInterval; missing -= expectedInterval) {
+                    corrected[indexOf(missing)] += counts[i];
+                    correctedCount += counts[i];
+                    correctedSum += counts[i] * missing;
+                }
+            }
+            return new Snapshot(corrected, correctedCount, correctedSum, max);
+        }
+
+        /**
+         * 小于等于 value 的记录数，value 落在桶中间时整个桶都计入
+         */
+        public long countAtOrBelow(long value) {
+            int last = indexOf(Math.max(0, value));
+            long seen = 0;
+            for (int i = 0; i <= last; i++) {
+                seen += counts[i];
+            }
+            return seen;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,202 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 内置压测：用 HttpClient 在虚拟线程上发请求。
+ * 闭环模式下每个并发连接收到响应后立即发下一个请求；开环模式按固定速率排定每个请求的计划发出时间，
+ * 延迟从计划时间开始算，服务端变慢导致请求积压的等待时间也计入延迟（避免协调遗漏）。
+ * 闭环模式本身无法测到被推迟的请求，结果里另外给出按 HdrHistogram 方法校正后的分位数。
+ */
+public class LoadGenerator {
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99, 0.999};
+
+    private final URI target;
+    private final int concurrency;
+    private final long durationNanos;
+    private final double rate;
+
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder httpErrors = new LongAdder();
+    private final LongAdder connectErrors = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder otherErrors = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    /**
+     * @param rate 开环模式的总请求速率(每秒)，0表示闭环模式
+     */
+    public LoadGenerator(URI target, int concurrency, Duration duration, double rate) {
+        this.target = target;
+        this.concurrency = concurrency;
+        this.durationNanos = duration.toNanos();
+        this.rate = rate;
+    }
+
+    /**
+     * 运行压测并返回结果报告，阻塞直到持续时间结束且所有请求返回
+     */
+    public String run() {
+        HttpRequest request = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofSeconds(30))
+                .header("User-Agent", "WebServerManager-bench/1.0")
+                .GET()
+                .build();
+
+        try (ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .connectTimeout(Duration.ofSeconds(5))
+                     .executor(clientExecutor)
+                     .build()) {
+            long start = System.nanoTime();
+            long end = start + durationNanos;
+            long intervalNanos = rate > 0 ? (long) (1_000_000_000L / rate) : 0;
+            AtomicLong tickets = new AtomicLong();
+
+            try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < concurrency; i++) {
+                    workers.submit(() -> {
+                        byte[] buffer = new byte[16 * 1024];
+                        while (true) {
+                            long now = System.nanoTime();
+                            if (now >= end) {
+                                // 开环模式下落后于计划的请求不再补发，报告里计为未发出
+                                return;
+                            }
+                            long intended = now;
+                            if (intervalNanos > 0) {
+                                intended = start + tickets.getAndIncrement() * intervalNanos;
+                                if (intended >= end) {
+                                    return;
+                                }
+                                if (intended > now) {
+                                    LockSupport.parkNanos(intended - now);
+                                }
+                            }
+                            send(client, request, buffer, intended);
+                        }
+                    });
+                }
+            }
+            return report(System.nanoTime() - start);
+        }
+    }
+
+    private void send(HttpClient client, HttpRequest request, byte[] buffer, long intended) {
+        long sent = System.nanoTime();
+        try {
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            long received = 0;
+            try (InputStream body = response.body()) {
+                int n;
+                while ((n = body.read(buffer)) > 0) {
+                    received += n;
+                }
+            }
+            long done = System.nanoTime();
+            serviceTime.record((done - sent) / 1000);
+            responseTime.record((done - intended) / 1000);
+            bytes.add(received);
+            if (response.statusCode() >= 400) {
+                httpErrors.increment();
+            } else {
+                succeeded.increment();
+            }
+        } catch (HttpTimeoutException e) {
+            timeouts.increment();
+        } catch (ConnectException e) {
+            connectErrors.increment();
+        } catch (IOException e) {
+            otherErrors.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String report(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long ok = succeeded.sum();
+        long failed = httpErrors.sum() + connectErrors.sum() + timeouts.sum() + otherErrors.sum();
+        LatencyHistogram.Snapshot service = serviceTime.snapshot();
+        LatencyHistogram.Snapshot response = responseTime.snapshot();
+
+        StringBuilder report = new StringBuilder();
+        report.append("=== 压测结果 ===\n");
+        report.append("目标: ").append(target).append("\n");
+        if (rate > 0) {
+            report.append("模式: 开环 (计划速率 ").append(String.format("%.0f", rate))
+                    .append(" req/s, 最多 ").append(concurrency).append(" 个并发)\n");
+        } else {
+            report.append("模式: 闭环 (").append(concurrency).append(" 个并发)\n");
+        }
+        report.append("持续时间: ").append(String.format("%.1f", seconds)).append("s\n");
+        report.append("请求: 成功 ").append(ok).append(", 失败 ").append(failed);
+        if (failed > 0) {
+            report.append(" (HTTP错误 ").append(httpErrors.sum())
+                    .append(", 连接失败 ").append(connectErrors.sum())
+                    .append(", 超时 ").append(timeouts.sum())
+                    .append(", 其他 ").append(otherErrors.sum()).append(")");
+        }
+        report.append("\n");
+        report.append("吞吐量: ").append(String.format("%.1f req/s, %.2f MB/s",
+                (ok + httpErrors.sum()) / seconds, bytes.sum() / seconds / (1024 * 1024))).append("\n");
+
+        report.append(String.format("%-18s %9s %9s %9s %9s %9s%n", "延迟(ms)", "p50", "p90", "p99", "p99.9", "max"));
+        if (rate > 0) {
+            appendRow(report, "服务时间", service);
+            appendRow(report, "响应时间(含排队)", response);
+            long planned = (long) (durationNanos / 1e9 * rate);
+            long behind = Math.max(0, planned - ok - failed);
+            if (behind > 0) {
+                report.append("⚠ 有 ").append(behind).append(" 个计划请求未能在压测时间内发出，服务端跟不上计划速率\n");
+            }
+        } else {
+            appendRow(report, "服务时间", service);
+            // 闭环模式下正常情况下两次请求的间隔就是一次响应时间，用中位数作为期望间隔
+            appendRow(report, "校正后(协调遗漏)", service.correctedFor(service.percentile(0.50)));
+        }
+        report.append("================");
+        return report.toString();
+    }
+
+    private static void appendRow(StringBuilder report, String label, LatencyHistogram.Snapshot snapshot) {
+        report.append(String.format("%-18s", label));
+        for (double percentile : PERCENTILES) {
+            report.append(String.format(" %9.2f", snapshot.percentile(percentile) / 1000.0));
+        }
+        report.append(String.format(" %9.2f%n", snapshot.max() / 1000.0));
+    }
+
+    /**
+     * 解析持续时间，支持 30、30s、2m 形式
+     */
+    static Duration parseDuration(String text) {
+        text = text.trim().toLowerCase();
+        if (text.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(text.substring(0, text.length() - 2)));
+        }
+        if (text.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(text.substring(0, text.length() - 1)));
+        }
+        if (text.endsWith("s")) {
+            text = text.substring(0, text.length() - 1);
+        }
+        return Duration.ofSeconds(Long.parseLong(text));
+    }
+}
\ No newline at end of file
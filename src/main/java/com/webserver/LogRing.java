@@ -0,0 +1,146 @@
+package com.webserver;
+
+/**
+ * 脚本输出的定长字节环形缓冲区。
+ * 只按整行写入，不为每行保留 String；位置用写入以来的总字节数表示，读者各自记录读到的位置，
+ * 落后超过容量时从仍在缓冲区里的最早一个完整行继续，被覆盖的部分只报告字节数。
+ */
+public class LogRing {
+    private final byte[] buffer;
+    private long written;
+    private long epoch;
+
+    public LogRing(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * 写入一行，line 中不含换行符，写入时补上。超过容量的行只保留末尾部分
+     */
+    public synchronized void appendLine(byte[] prefix, byte[] line, int offset, int length) {
+        put(prefix, 0, prefix.length);
+        put(line, offset, length);
+        buffer[(int) (written++ % buffer.length)] = '\n';
+        notifyAll();
+    }
+
+    private void put(byte[] source, int offset, int length) {
+        if (length > buffer.length) {
+            offset += length - buffer.length;
+            written += length - buffer.length;
+            length = buffer.length;
+        }
+        int position = (int) (written % buffer.length);
+        int first = Math.min(length, buffer.length - position);
+        System.arraycopy(source, offset, buffer, position, first);
+        System.arraycopy(source, offset + first, buffer, 0, length - first);
+        written += length;
+    }
+
+    /**
+     * 写入以来的总字节数，即下一个字节的位置
+     */
+    public synchronized long end() {
+        return written;
+    }
+
+    /**
+     * 仍在缓冲区中的最早一个完整行的起始位置，from 仍有效时原样返回
+     */
+    public synchronized long align(long from) {
+        long start = Math.max(0, written - buffer.length);
+        if (from >= start) {
+            return from;
+        }
+        if (start == 0) {
+            return 0;
+        }
+        // start 前一个字节已被覆盖，从 start 开始找第一个换行符，它后面才是完整行的开头
+        for (long p = start; p < written; p++) {
+            if (buffer[(int) (p % buffer.length)] == '\n') {
+                return p + 1;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 最后 lines 行的起始位置，prefix 不为 null 时只数以它开头的行
+     */
+    public synchronized long tail(int lines, byte[] prefix) {
+        if (lines <= 0) {
+            return written;
+        }
+        long start = align(0);
+        // 从倒数第二个字节往前找换行符，它后面就是一行的开头；最后一个字节是最后一行自己的换行符
+        int seen = 0;
+        for (long p = written - 2; p >= start - 1 && seen < lines; p--) {
+            if (p < start || buffer[(int) (p % buffer.length)] == '\n') {
+                if (prefix == null || startsWith(p + 1, prefix)) {
+                    if (++seen == lines) {
+                        return p + 1;
+                    }
+                }
+            }
+        }
+        return start;
+    }
+
+    /**
+     * 位置 at 开始的字节是否与 prefix 相同，at 必须在缓冲区内
+     */
+    public synchronized boolean startsWith(long at, byte[] prefix) {
+        if (at + prefix.length > written) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[(int) ((at + i) % buffer.length)] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从 from 开始复制最多 dst.length 字节，返回复制的字节数。from 必须已经 align
+     */
+    public synchronized int read(long from, byte[] dst) {
+        int length = (int) Math.min(dst.length, written - from);
+        int position = (int) (from % buffer.length);
+        int first = Math.min(length, buffer.length - position);
+        System.arraycopy(buffer, position, dst, 0, first);
+        System.arraycopy(buffer, 0, dst, first, length - first);
+        return length;
+    }
+
+    /**
+     * 等待 from 之后有新数据，返回 false 表示超时或已被 disconnectAll 唤醒
+     */
+    public synchronized boolean await(long from, long timeoutMillis, long followerEpoch) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (written <= from && epoch == followerEpoch) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return written > from && epoch == followerEpoch;
+    }
+
+    public synchronized long epoch() {
+        return epoch;
+    }
+
+    /**
+     * 让所有正在等待的读者结束，Web服务器停止或重启前调用
+     */
+    public synchronized void disconnectAll() {
+        epoch++;
+        notifyAll();
+    }
+
+    public int capacity() {
+        return buffer.length;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+package com.webserver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 进程内请求指标：按路由统计请求数（按状态码）、收发字节和延迟直方图，并输出 Prometheus 文本格式。
+ * 路由为 HttpServer 的上下文路径，数量固定，记录路径上只有一次 ConcurrentHashMap 查找和 LongAdder 累加。
+ */
+public class MetricsRegistry {
+    /** Prometheus 直方图的累计桶上界（秒） */
+    private static final double[] BUCKET_SECONDS = {
+            0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+    };
+    private static final double[] QUANTILES = {0.5, 0.9, 0.95, 0.99, 0.999};
+
+    private final ConcurrentHashMap<String, RouteMetrics> routes = new ConcurrentHashMap<>();
+    private final List<Gauge> gauges = new ArrayList<>();
+    private final List<GaugeFamily> gaugeFamilies = new ArrayList<>();
+    private final long startedAt = System.currentTimeMillis();
+
+    public RouteMetrics route(String route) {
+        RouteMetrics metrics = routes.get(route);
+        return metrics != null ? metrics : routes.computeIfAbsent(route, RouteMetrics::new);
+    }
+
+    /**
+     * 注册一个在导出时读取的数值，例如缓存大小、日志丢弃数等其他组件的状态
+     */
+    public synchronized void registerGauge(String name, String help, DoubleSupplier value) {
+        gauges.add(new Gauge(name, help, "gauge", value));
+    }
+
+    /**
+     * 注册一个在导出时读取的累计值，只增不减，名称应以 _total 结尾
+     */
+    public synchronized void registerCounter(String name, String help, DoubleSupplier value) {
+        gauges.add(new Gauge(name, help, "counter", value));
+    }
+
+    /**
+     * 注册一组带一个标签的数值，例如每个工作进程一个样本。values 的键是标签值，值为 NaN 的样本不输出
+     */
+    public synchronized void registerGaugeFamily(String name, String help, String label,
+                                                 Supplier<Map<String, Double>> values) {
+        gaugeFamilies.add(new GaugeFamily(name, help, label, values));
+    }
+
+    /**
+     * 按路由名排序的当前指标
+     */
+    public Map<String, RouteMetrics> routes() {
+        return new TreeMap<>(routes);
+    }
+
+    public String toPrometheus() {
+        Map<String, RouteMetrics> sorted = routes();
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# HELP webserver_requests_total HTTP requests by route and status code.\n");
+        out.append("# TYPE webserver_requests_total counter\n");
+        for (RouteMetrics metrics : sorted.values()) {
+            for (int status = 0; status < RouteMetrics.STATUS_SLOTS; status++) {
+                LongAdder counter = metrics.statuses.get(status);
+                if (counter != null) {
+                    out.append("webserver_requests_total{route=\"").append(escape(metrics.route))
+                            .append("\",code=\"").append(status).append("\"} ").append(counter.sum()).append('\n');
+                }
+            }
+        }
+
+        out.append("# HELP webserver_response_bytes_total Response body bytes sent.\n");
+        out.append("# TYPE webserver_response_bytes_total counter\n");
+        for (RouteMetrics metrics : sorted.values()) {
+            sample(out, "webserver_response_bytes_total", metrics.route, metrics.bytesSent.sum());
+        }
+        out.append("# HELP webserver_request_bytes_total Request body bytes received.\n");
+        out.append("# TYPE webserver_request_bytes_total counter\n");
+        for (RouteMetrics metrics : sorted.values()) {
+            sample(out, "webserver_request_bytes_total", metrics.route, metrics.bytesReceived.sum());
+        }
+
+        out.append("# HELP webserver_request_duration_seconds Request latency from handler entry to completion.\n");
+        out.append("# TYPE webserver_request_duration_seconds histogram\n");
+        List<LatencyHistogram.Snapshot> snapshots = new ArrayList<>(sorted.size());
+        for (RouteMetrics metrics : sorted.values()) {
+            LatencyHistogram.Snapshot snapshot = metrics.latency.snapshot();
+            snapshots.add(snapshot);
+            String route = escape(metrics.route);
+            for (double bound : BUCKET_SECONDS) {
+                out.append("webserver_request_duration_seconds_bucket{route=\"").append(route)
+                        .append("\",le=\"").append(bound).append("\"} ")
+                        .append(snapshot.countAtOrBelow((long) (bound * 1_000_000))).append('\n');
+            }
+            out.append("webserver_request_duration_seconds_bucket{route=\"").append(route)
+                    .append("\",le=\"+Inf\"} ").append(snapshot.count()).append('\n');
+            sample(out, "webserver_request_duration_seconds_sum", metrics.route, snapshot.sum() / 1e6);
+            sample(out, "webserver_request_duration_seconds_count", metrics.route, snapshot.count());
+        }
+
+        out.append("# HELP webserver_request_duration_quantile_seconds Latency percentiles since start.\n");
+        out.append("# TYPE webserver_request_duration_quantile_seconds gauge\n");
+        int i = 0;
+        for (RouteMetrics metrics : sorted.values()) {
+            LatencyHistogram.Snapshot snapshot = snapshots.get(i++);
+            for (double quantile : QUANTILES) {
+                out.append("webserver_request_duration_quantile_seconds{route=\"").append(escape(metrics.route))
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(snapshot.percentile(quantile) / 1e6).append('\n');
+            }
+        }
+
+        out.append("# HELP webserver_uptime_seconds Seconds since the metrics registry was created.\n");
+        out.append("# TYPE webserver_uptime_seconds gauge\n");
+        out.append("webserver_uptime_seconds ").append((System.currentTimeMillis() - startedAt) / 1000).append('\n');
+        synchronized (this) {
+            for (Gauge gauge : gauges) {
+                out.append("# HELP ").append(gauge.name).append(' ').append(gauge.help).append('\n');
+                out.append("# TYPE ").append(gauge.name).append(' ').append(gauge.type).append('\n');
+                out.append(gauge.name).append(' ').append(gauge.value.getAsDouble()).append('\n');
+            }
+            for (GaugeFamily family : gaugeFamilies) {
+                out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+                out.append("# TYPE ").append(family.name).append(" gauge\n");
+                for (Map.Entry<String, Double> value : family.values.get().entrySet()) {
+                    if (!value.getValue().isNaN()) {
+                        out.append(family.name).append('{').append(family.label).append("=\"")
+                                .append(escape(value.getKey())).append("\"} ").append(value.getValue()).append('\n');
+                    }
+                }
+            }
+        }
+        return out.toString();
+    }
+
+    private static void sample(StringBuilder out, String name, String route, double value) {
+        out.append(name).append("{route=\"").append(escape(route)).append("\"} ");
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        } else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    private static String escape(String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * 单个路由的计数器
+     */
+    public static class RouteMetrics {
+        /** 状态码 0-599，0 表示响应头发送前连接中断或处理器抛出异常 */
+        static final int STATUS_SLOTS = 600;
+
+        private final String route;
+        private final AtomicReferenceArray<LongAdder> statuses = new AtomicReferenceArray<>(STATUS_SLOTS);
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        RouteMetrics(String route) {
+            this.route = route;
+        }
+
+        public void record(int status, long durationMicros, long sent, long received) {
+            int slot = status >= 0 && status < STATUS_SLOTS ? status : 0;
+            LongAdder counter = statuses.get(slot);
+            if (counter == null) {
+                statuses.compareAndSet(slot, null, new LongAdder());
+                counter = statuses.get(slot);
+            }
+            counter.increment();
+            bytesSent.add(sent);
+            bytesReceived.add(received);
+            latency.record(durationMicros);
+        }
+
+        public String route() {
+            return route;
+        }
+
+        public long requests() {
+            long requests = 0;
+            for (int status = 0; status < STATUS_SLOTS; status++) {
+                LongAdder counter = statuses.get(status);
+                if (counter != null) {
+                    requests += counter.sum();
+                }
+            }
+            return requests;
+        }
+
+        /**
+         * 状态码 >= 500 或未发送响应的请求数
+         */
+        public long errors() {
+            long errors = 0;
+            for (int status = 0; status < STATUS_SLOTS; status++) {
+                LongAdder counter = statuses.get(status);
+                if (counter != null && (status == 0 || status >= 500)) {
+                    errors += counter.sum();
+                }
+            }
+            return errors;
+        }
+
+        public long bytesSent() {
+            return bytesSent.sum();
+        }
+
+        public long bytesReceived() {
+            return bytesReceived.sum();
+        }
+
+        public LatencyHistogram.Snapshot latency() {
+            return latency.snapshot();
+        }
+    }
+
+    private static class GaugeFamily {
+        private final String name;
+        private final String help;
+        private final String label;
+        private final Supplier<Map<String, Double>> values;
+
+        GaugeFamily(String name, String help, String label, Supplier<Map<String, Double>> values) {
+            this.name = name;
+            this.help = help;
+            this.label = label;
+            this.values = values;
+        }
+    }
+
+    private static class Gauge {
+        private final String name;
+        private final String help;
+        private final String type;
+        private final DoubleSupplier value;
+
+        Gauge(String name, String help, String type, DoubleSupplier value) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
\ No newline at end of file
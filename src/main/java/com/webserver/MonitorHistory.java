@@ -0,0 +1,387 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 监控探测结果的本地时序存储，每个目标一个目录，按UTC日期分段:
+ * raw-yyyy-MM-dd.bin 逐条保存原始探测(定长16字节)，min-yyyy-MM-dd.bin 保存每分钟汇总(1440个定长槽位)。
+ * 当天的两个文件用内存映射写入，写入时同时更新分钟槽位，不需要后台降采样任务。
+ * 原始数据和分钟汇总分别按天数保留。按分钟或更粗粒度的查询只读分钟汇总，耗时与原始样本数无关。
+ */
+public class MonitorHistory {
+    static final long DAY_MILLIS = 86_400_000L;
+    static final long MINUTE_MILLIS = 60_000L;
+    private static final int MINUTES_PER_DAY = 1440;
+    private static final int RAW_MAGIC = 0x57534d52;
+    private static final int MINUTE_MAGIC = 0x57534d4d;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    /** 原始记录: 时间戳(8) 响应时间(4) 结果(1) 填充(3) */
+    private static final int RAW_RECORD_BYTES = 16;
+    /** 分钟槽位: 检查数(4) 成功数(4) 成功响应时间之和(8) 最小(4) 最大(4) */
+    private static final int MINUTE_SLOT_BYTES = 24;
+    /** 每天最多保存的原始记录数(128MB)，超出后只更新分钟汇总 */
+    private static final int MAX_RAW_RECORDS = 1 << 23;
+    private static final int MAX_BUCKETS = 100_000;
+
+    private final Path directory;
+    private final int rawRetentionDays;
+    private final int retentionDays;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+
+    public MonitorHistory(Path directory, int rawRetentionDays, int retentionDays) {
+        this.directory = directory;
+        this.rawRetentionDays = rawRetentionDays;
+        this.retentionDays = Math.max(retentionDays, rawRetentionDays);
+    }
+
+    /**
+     * 追加一次探测结果，写入失败的目标打印一次错误后不再记录
+     */
+    public void append(String target, long timeMillis, long latencyMillis, ProbeOutcome outcome) {
+        Series s = series.computeIfAbsent(target, t -> new Series(directory.resolve(directoryName(t))));
+        s.append(timeMillis, (int) Math.min(latencyMillis, Integer.MAX_VALUE), outcome);
+    }
+
+    /**
+     * 查询 [fromMillis, toMillis) 内按 bucketMillis 聚合的结果，没有数据的桶 count 为0。
+     * bucketMillis 是整分钟时从分钟汇总读取(起点向下对齐到分钟)，否则扫描原始记录，原始记录超过保留天数后查不到
+     */
+    public List<Bucket> query(String target, long fromMillis, long toMillis, long bucketMillis) throws IOException {
+        if (bucketMillis <= 0 || toMillis <= fromMillis) {
+            throw new IllegalArgumentException("无效的查询范围");
+        }
+        boolean byMinute = bucketMillis % MINUTE_MILLIS == 0;
+        if (byMinute) {
+            fromMillis = Math.floorDiv(fromMillis, MINUTE_MILLIS) * MINUTE_MILLIS;
+        }
+        long bucketCount = (toMillis - fromMillis + bucketMillis - 1) / bucketMillis;
+        if (bucketCount > MAX_BUCKETS) {
+            throw new IllegalArgumentException("查询的桶数过多: " + bucketCount);
+        }
+        List<Bucket> buckets = new ArrayList<>((int) bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            buckets.add(new Bucket(fromMillis + i * bucketMillis));
+        }
+
+        Path dir = directory.resolve(directoryName(target));
+        Series open = series.get(target);
+        for (long day = Math.floorDiv(fromMillis, DAY_MILLIS); day <= Math.floorDiv(toMillis - 1, DAY_MILLIS); day++) {
+            ByteBuffer data = open == null ? null : open.snapshot(day, byMinute);
+            if (data == null) {
+                data = readSegment(dir.resolve(segmentName(byMinute ? "min" : "raw", day)));
+            }
+            if (data == null) {
+                continue;
+            }
+            if (byMinute) {
+                addMinutes(data, day, fromMillis, toMillis, bucketMillis, buckets);
+            } else {
+                addRaw(data, fromMillis, toMillis, bucketMillis, buckets);
+            }
+        }
+        return buckets;
+    }
+
+    private static void addMinutes(ByteBuffer data, long day, long from, long to, long bucketMillis,
+                                   List<Bucket> buckets) {
+        if (data.getInt(0) != MINUTE_MAGIC) {
+            return;
+        }
+        long dayStart = day * DAY_MILLIS;
+        int first = (int) Math.max(0, (from - dayStart) / MINUTE_MILLIS);
+        int last = (int) Math.min(MINUTES_PER_DAY, (to - dayStart + MINUTE_MILLIS - 1) / MINUTE_MILLIS);
+        for (int minute = first; minute < last; minute++) {
+            int offset = HEADER_BYTES + minute * MINUTE_SLOT_BYTES;
+            int count = data.getInt(offset);
+            if (count == 0) {
+                continue;
+            }
+            int ok = data.getInt(offset + 4);
+            long start = dayStart + minute * MINUTE_MILLIS;
+            buckets.get((int) ((start - from) / bucketMillis)).add(count, ok, data.getLong(offset + 8),
+                    ok == 0 ? Integer.MAX_VALUE : data.getInt(offset + 16), data.getInt(offset + 20));
+        }
+    }
+
+    private static void addRaw(ByteBuffer data, long from, long to, long bucketMillis, List<Bucket> buckets) {
+        if (data.getInt(0) != RAW_MAGIC) {
+            return;
+        }
+        int count = data.getInt(12);
+        for (int i = 0; i < count; i++) {
+            int offset = HEADER_BYTES + i * RAW_RECORD_BYTES;
+            long time = data.getLong(offset);
+            if (time < from || time >= to) {
+                continue;
+            }
+            boolean ok = data.get(offset + 12) == ProbeOutcome.OK.ordinal();
+            int latency = data.getInt(offset + 8);
+            buckets.get((int) ((time - from) / bucketMillis)).add(1, ok ? 1 : 0,
+                    ok ? latency : 0, ok ? latency : Integer.MAX_VALUE, ok ? latency : 0);
+        }
+    }
+
+    private static ByteBuffer readSegment(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            }
+            return buffer.limit() < HEADER_BYTES ? null : buffer;
+        }
+    }
+
+    /**
+     * 把内存映射的改动写回磁盘并释放文件
+     */
+    public void close() {
+        for (Series s : series.values()) {
+            s.close();
+        }
+        series.clear();
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    static String directoryName(String target) {
+        return target.replaceAll("[^A-Za-z0-9.-]", "_");
+    }
+
+    static String segmentName(String kind, long day) {
+        return kind + "-" + LocalDate.ofEpochDay(day) + ".bin";
+    }
+
+    /**
+     * 一个时间桶的聚合结果，响应时间只统计成功的探测
+     */
+    public static class Bucket {
+        private final long start;
+        private int count;
+        private int ok;
+        private long latencySum;
+        private int latencyMin = Integer.MAX_VALUE;
+        private int latencyMax;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        void add(int count, int ok, long latencySum, int latencyMin, int latencyMax) {
+            this.count += count;
+            this.ok += ok;
+            this.latencySum += latencySum;
+            this.latencyMin = Math.min(this.latencyMin, latencyMin);
+            this.latencyMax = Math.max(this.latencyMax, latencyMax);
+        }
+
+        public long start() {
+            return start;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        public int ok() {
+            return ok;
+        }
+
+        /**
+         * 成功率(0~1)，没有数据时返回 NaN
+         */
+        public double successRatio() {
+            return count == 0 ? Double.NaN : (double) ok / count;
+        }
+
+        /**
+         * 平均响应时间(毫秒)，没有成功的探测时返回 -1
+         */
+        public double averageLatency() {
+            return ok == 0 ? -1 : (double) latencySum / ok;
+        }
+
+        public int minLatency() {
+            return ok == 0 ? -1 : latencyMin;
+        }
+
+        public int maxLatency() {
+            return ok == 0 ? -1 : latencyMax;
+        }
+    }
+
+    /**
+     * 单个目标当天打开的分段
+     */
+    private class Series {
+        private final Path dir;
+        private long day = Long.MIN_VALUE;
+        private FileChannel rawChannel;
+        private MappedByteBuffer raw;
+        private int rawCapacity;
+        private int rawCount;
+        private FileChannel minuteChannel;
+        private MappedByteBuffer minutes;
+        private boolean failed;
+
+        Series(Path dir) {
+            this.dir = dir;
+        }
+
+        synchronized void append(long time, int latency, ProbeOutcome outcome) {
+            if (failed) {
+                return;
+            }
+            try {
+                long recordDay = Math.floorDiv(time, DAY_MILLIS);
+                if (recordDay != day) {
+                    open(recordDay);
+                }
+                if (rawCount == rawCapacity && rawCapacity < MAX_RAW_RECORDS) {
+                    rawCapacity = Math.min(rawCapacity * 2, MAX_RAW_RECORDS);
+                    raw = rawChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                            HEADER_BYTES + (long) rawCapacity * RAW_RECORD_BYTES);
+                }
+            } catch (IOException | RuntimeException e) {
+                failed = true;
+                System.err.println("✗ 监控历史写入失败，已停止记录 " + dir + ": " + e.getMessage());
+                return;
+            }
+
+            if (rawCount < rawCapacity) {
+                int offset = HEADER_BYTES + rawCount * RAW_RECORD_BYTES;
+                raw.putLong(offset, time);
+                raw.putInt(offset + 8, latency);
+                raw.put(offset + 12, (byte) outcome.ordinal());
+                raw.putInt(12, ++rawCount);
+            }
+
+            boolean ok = outcome == ProbeOutcome.OK;
+            int slot = HEADER_BYTES + (int) ((time - day * DAY_MILLIS) / MINUTE_MILLIS) * MINUTE_SLOT_BYTES;
+            int previous = minutes.getInt(slot);
+            minutes.putInt(slot, previous + 1);
+            if (ok) {
+                int okCount = minutes.getInt(slot + 4);
+                minutes.putInt(slot + 4, okCount + 1);
+                minutes.putLong(slot + 8, minutes.getLong(slot + 8) + latency);
+                minutes.putInt(slot + 16, okCount == 0 ? latency : Math.min(minutes.getInt(slot + 16), latency));
+                minutes.putInt(slot + 20, Math.max(minutes.getInt(slot + 20), latency));
+            }
+        }
+
+        /**
+         * 当天分段的只读视图，其他日期返回 null 由调用方从文件读取
+         */
+        synchronized ByteBuffer snapshot(long queryDay, boolean byMinute) {
+            if (queryDay != day || failed) {
+                return null;
+            }
+            return (byMinute ? minutes : raw).asReadOnlyBuffer();
+        }
+
+        private void open(long newDay) throws IOException {
+            close();
+            Files.createDirectories(dir);
+            rawChannel = FileChannel.open(dir.resolve(segmentName("raw", newDay)),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            long existing = rawChannel.size();
+            rawCount = 0;
+            if (existing >= HEADER_BYTES) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                rawChannel.read(header, 0);
+                if (header.getInt(0) != RAW_MAGIC || header.getInt(8) != RAW_RECORD_BYTES) {
+                    throw new IOException("文件格式不正确: " + segmentName("raw", newDay));
+                }
+                rawCount = header.getInt(12);
+            }
+            rawCapacity = (int) Math.min(MAX_RAW_RECORDS,
+                    Math.max(1024, Math.max(rawCount, (existing - HEADER_BYTES) / RAW_RECORD_BYTES)));
+            rawCount = Math.min(rawCount, rawCapacity);
+            raw = rawChannel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) rawCapacity * RAW_RECORD_BYTES);
+            writeHeader(raw, RAW_MAGIC, RAW_RECORD_BYTES);
+
+            minuteChannel = FileChannel.open(dir.resolve(segmentName("min", newDay)),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            boolean fresh = minuteChannel.size() < HEADER_BYTES;
+            minutes = minuteChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER_BYTES + (long) MINUTES_PER_DAY * MINUTE_SLOT_BYTES);
+            if (!fresh && minutes.getInt(0) != MINUTE_MAGIC) {
+                throw new IOException("文件格式不正确: " + segmentName("min", newDay));
+            }
+            writeHeader(minutes, MINUTE_MAGIC, MINUTE_SLOT_BYTES);
+            day = newDay;
+            deleteExpired(newDay);
+        }
+
+        private void writeHeader(MappedByteBuffer buffer, int magic, int recordBytes) {
+            buffer.putInt(0, magic);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, recordBytes);
+        }
+
+        /**
+         * 换天时删除超过保留天数的分段
+         */
+        private void deleteExpired(long today) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.bin")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    boolean isRaw = name.startsWith("raw-");
+                    if (!isRaw && !name.startsWith("min-")) {
+                        continue;
+                    }
+                    long fileDay;
+                    try {
+                        fileDay = LocalDate.parse(name.substring(4, name.length() - 4)).toEpochDay();
+                    } catch (RuntimeException e) {
+                        continue;
+                    }
+                    if (today - fileDay >= (isRaw ? rawRetentionDays : retentionDays)) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("⚠ 清理过期监控历史失败: " + e.getMessage());
+            }
+        }
+
+        synchronized void close() {
+            if (raw != null) {
+                raw.force();
+                minutes.force();
+            }
+            closeQuietly(rawChannel);
+            closeQuietly(minuteChannel);
+            raw = null;
+            minutes = null;
+            rawChannel = null;
+            minuteChannel = null;
+            day = Long.MIN_VALUE;
+        }
+
+        private void closeQuietly(FileChannel channel) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,212 @@
+package com.webserver;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一个监控目标及其检查间隔、超时和响应体校验。
+ * 配置格式: 多个目标用逗号分隔，每个目标可用 | 追加参数，例如
+ * example.com,https://api.example.com/health|interval=10s|timeout=2s
+ * 校验参数: size=字节数, crc32c=8位十六进制, sha256=64位十六进制 或 sha256=file:本地文件(按文件当前内容计算)
+ */
+public class MonitorTarget {
+    private final String url;
+    private final URI uri;
+    private final long intervalMillis;
+    private final long timeoutMillis;
+    private final boolean local;
+    private final long expectedSize;
+    private final String expectedCrc32c;
+    private final String expectedSha256;
+
+    MonitorTarget(String url, long intervalMillis, long timeoutMillis, boolean local) {
+        this(url, intervalMillis, timeoutMillis, local, -1, null, null);
+    }
+
+    MonitorTarget(String url, long intervalMillis, long timeoutMillis, boolean local,
+                  long expectedSize, String expectedCrc32c, String expectedSha256) {
+        this.url = url;
+        this.uri = URI.create(url);
+        this.intervalMillis = intervalMillis;
+        this.timeoutMillis = timeoutMillis;
+        this.local = local;
+        this.expectedSize = expectedSize;
+        this.expectedCrc32c = expectedCrc32c;
+        this.expectedSha256 = expectedSha256;
+    }
+
+    /**
+     * 本机Web服务器
+     */
+    public static MonitorTarget local(String host, int port, long intervalMillis, long timeoutMillis) {
+        return new MonitorTarget("http://" + host + ":" + port, intervalMillis, timeoutMillis, true);
+    }
+
+    /**
+     * 解析单个目标，格式错误时抛出 IllegalArgumentException
+     */
+    public static MonitorTarget parse(String spec, long defaultIntervalMillis, long defaultTimeoutMillis) {
+        String[] items = spec.trim().split("\\|");
+        String url = items[0].trim();
+        if (url.isEmpty()) {
+            throw new IllegalArgumentException("目标地址为空");
+        }
+        if (!url.startsWith("http://") && !url.startsWith("https://")) {
+            url = "http://" + url;
+        }
+        long interval = defaultIntervalMillis;
+        long timeout = defaultTimeoutMillis;
+        long size = -1;
+        String crc32c = null;
+        String sha256 = null;
+        for (int i = 1; i < items.length; i++) {
+            String item = items[i].trim();
+            int equals = item.indexOf('=');
+            if (equals < 0) {
+                throw new IllegalArgumentException("无效参数: " + item);
+            }
+            String name = item.substring(0, equals).trim().toLowerCase();
+            String value = item.substring(equals + 1).trim();
+            switch (name) {
+                case "interval":
+                    interval = parseMillis(value);
+                    break;
+                case "timeout":
+                    timeout = parseMillis(value);
+                    break;
+                case "size":
+                    try {
+                        size = Long.parseLong(value);
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("无效大小: " + value);
+                    }
+                    break;
+                case "crc32c":
+                    if (!value.matches("[0-9a-fA-F]{8}")) {
+                        throw new IllegalArgumentException("crc32c必须是8位十六进制: " + value);
+                    }
+                    crc32c = value.toLowerCase();
+                    break;
+                case "sha256":
+                    if (value.startsWith("file:") && value.length() > "file:".length()) {
+                        sha256 = value;
+                    } else if (value.matches("[0-9a-fA-F]{64}")) {
+                        sha256 = value.toLowerCase();
+                    } else {
+                        throw new IllegalArgumentException("sha256必须是64位十六进制或 file:路径: " + value);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + name);
+            }
+        }
+        if (interval <= 0 || timeout <= 0) {
+            throw new IllegalArgumentException("interval和timeout必须大于0");
+        }
+        URI uri = URI.create(url);
+        if (uri.getHost() == null) {
+            throw new IllegalArgumentException("无效地址: " + url);
+        }
+        return new MonitorTarget(url, interval, timeout, false, size, crc32c, sha256);
+    }
+
+    /**
+     * 解析逗号分隔的目标列表，无效的目标打印错误后跳过
+     */
+    public static List<MonitorTarget> parseList(String specs, long defaultIntervalMillis, long defaultTimeoutMillis) {
+        List<MonitorTarget> targets = new ArrayList<>();
+        for (String spec : specs.split(",")) {
+            if (spec.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                targets.add(parse(spec, defaultIntervalMillis, defaultTimeoutMillis));
+            } catch (IllegalArgumentException e) {
+                System.err.println("✗ 监控目标配置无效，已跳过: " + spec.trim() + " (" + e.getMessage() + ")");
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * 解析时长，支持 500ms、5s、2m、1h、7d 和不带单位的秒数
+     */
+    static long parseMillis(String value) {
+        value = value.trim().toLowerCase();
+        try {
+            if (value.endsWith("ms")) {
+                return Long.parseLong(value.substring(0, value.length() - 2));
+            }
+            if (value.endsWith("m")) {
+                return Long.parseLong(value.substring(0, value.length() - 1)) * 60_000;
+            }
+            if (value.endsWith("h")) {
+                return Long.parseLong(value.substring(0, value.length() - 1)) * 3_600_000;
+            }
+            if (value.endsWith("d")) {
+                return Long.parseLong(value.substring(0, value.length() - 1)) * 86_400_000;
+            }
+            if (value.endsWith("s")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            return Long.parseLong(value) * 1000;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效时长: " + value);
+        }
+    }
+
+    public String url() {
+        return url;
+    }
+
+    public URI uri() {
+        return uri;
+    }
+
+    public long intervalMillis() {
+        return intervalMillis;
+    }
+
+    public long timeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public boolean isLocal() {
+        return local;
+    }
+
+    /**
+     * 期望的响应体字节数，-1 表示不校验
+     */
+    public long expectedSize() {
+        return expectedSize;
+    }
+
+    public String expectedCrc32c() {
+        return expectedCrc32c;
+    }
+
+    /**
+     * 期望的 SHA-256，以 file: 开头时表示按本地文件当前内容计算
+     */
+    public String expectedSha256() {
+        return expectedSha256;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(url).append(" (间隔 ").append(intervalMillis / 1000.0)
+                .append("s, 超时 ").append(timeoutMillis / 1000.0).append("s");
+        if (expectedSize >= 0) {
+            sb.append(", 大小 ").append(expectedSize);
+        }
+        if (expectedCrc32c != null) {
+            sb.append(", crc32c ").append(expectedCrc32c);
+        }
+        if (expectedSha256 != null) {
+            sb.append(", sha256 ").append(HttpProbe.abbreviate(expectedSha256));
+        }
+        return sb.append(")").toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,356 @@
+package com.webserver;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 流式 multipart/form-data 解析器。
+ * 在固定大小的滑动缓冲区里用 Boyer-Moore-Horspool 查找边界，文件部分直接写入临时文件，
+ * 内存占用与上传大小无关。每个实例只解析一个请求体。
+ */
+public class MultipartParser {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_HEADER_BYTES = 16 * 1024;
+    private static final int MAX_FIELD_BYTES = 64 * 1024;
+    /** RFC 2046 规定 boundary 最长 70 个字符 */
+    public static final int MAX_BOUNDARY_LENGTH = 70;
+
+    private final byte[] delimiter;
+    private final int[] shift = new int[256];
+    private final Path tempDir;
+    private final long maxBytes;
+
+    private InputStream in;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private long totalRead = 0;
+
+    /**
+     * @param boundary Content-Type 中的 boundary 参数
+     * @param tempDir  文件部分临时文件所在目录
+     * @param maxBytes 请求体最大字节数，超过时抛出 TooLargeException
+     * @throws IllegalArgumentException boundary 为空或超过 MAX_BOUNDARY_LENGTH
+     */
+    public MultipartParser(String boundary, Path tempDir, long maxBytes) {
+        if (!isValidBoundary(boundary)) {
+            throw new IllegalArgumentException("无效的multipart边界");
+        }
+        this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        this.tempDir = tempDir;
+        this.maxBytes = maxBytes;
+
+        // Horspool 坏字符表：不在模式串(除末字节外)中出现的字节可以整段跳过
+        Arrays.fill(shift, delimiter.length);
+        for (int i = 0; i < delimiter.length - 1; i++) {
+            shift[delimiter[i] & 0xFF] = delimiter.length - 1 - i;
+        }
+    }
+
+    /**
+     * RFC 2046 规定边界为 1 到 70 个字符，过长的边界可能放不进缓冲区，查找时永远读不到足够的字节
+     */
+    public static boolean isValidBoundary(String boundary) {
+        return boundary != null && !boundary.isEmpty() && boundary.length() <= MAX_BOUNDARY_LENGTH;
+    }
+
+    public List<Part> parse(InputStream input) throws IOException {
+        this.in = input;
+        // 请求体以 "--boundary" 开头，前面补一个CRLF使第一个边界和后续边界形式一致
+        buf[0] = '\r';
+        buf[1] = '\n';
+        limit = 2;
+
+        List<Part> parts = new ArrayList<>();
+        try {
+            if (!copyUntilDelimiter(OutputStream.nullOutputStream(), Long.MAX_VALUE)) {
+                throw new MalformedException("未找到multipart边界");
+            }
+            while (true) {
+                require(2);
+                if (buf[pos] == '-' && buf[pos + 1] == '-') {
+                    break;
+                }
+                skipLineEnd();
+                parts.add(readPart());
+            }
+            return parts;
+        } catch (IOException | RuntimeException e) {
+            for (Part part : parts) {
+                part.delete();
+            }
+            throw e;
+        }
+    }
+
+    private Part readPart() throws IOException {
+        String headers = readHeaders();
+        String name = null;
+        String filename = null;
+        String contentType = null;
+        for (String line : headers.split("\r\n")) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String headerName = line.substring(0, colon).trim();
+            String headerValue = line.substring(colon + 1).trim();
+            if (headerName.equalsIgnoreCase("Content-Disposition")) {
+                name = dispositionParameter(headerValue, "name");
+                filename = dispositionParameter(headerValue, "filename");
+            } else if (headerName.equalsIgnoreCase("Content-Type")) {
+                contentType = headerValue;
+            }
+        }
+
+        if (filename == null) {
+            ByteArrayOutputStream value = new ByteArrayOutputStream();
+            if (!copyUntilDelimiter(value, MAX_FIELD_BYTES)) {
+                throw new MalformedException("multipart数据不完整");
+            }
+            return new Part(name, null, contentType, null, value.size(),
+                    value.toString(StandardCharsets.UTF_8));
+        }
+
+        Path file = Files.createTempFile(tempDir, "upload-", ".part");
+        long size;
+        boolean complete = false;
+        try (CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            if (!copyUntilDelimiter(out, Long.MAX_VALUE)) {
+                throw new MalformedException("multipart数据不完整");
+            }
+            size = out.getCount();
+            complete = true;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(file);
+            }
+        }
+        return new Part(name, filename, contentType, file, size, null);
+    }
+
+    /**
+     * 把当前位置到下一个边界之前的字节写入out，并跳过边界本身。流结束仍未找到边界时返回false。
+     */
+    private boolean copyUntilDelimiter(OutputStream out, long maxOut) throws IOException {
+        long written = 0;
+        while (true) {
+            int index = indexOfDelimiter(pos, limit);
+            int end = index >= 0 ? index : limit - (delimiter.length - 1);
+            if (end > pos) {
+                written += end - pos;
+                if (written > maxOut) {
+                    throw new MalformedException("表单字段过大");
+                }
+                out.write(buf, pos, end - pos);
+                pos = end;
+            }
+            if (index >= 0) {
+                pos = index + delimiter.length;
+                return true;
+            }
+            if (!fill()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Boyer-Moore-Horspool 查找分隔符，返回缓冲区内的绝对位置
+     */
+    private int indexOfDelimiter(int from, int to) {
+        int last = delimiter.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (buf[i + j] == delimiter[j]) {
+                if (j == 0) {
+                    return i;
+                }
+                j--;
+            }
+            i += shift[buf[i + last] & 0xFF];
+        }
+        return -1;
+    }
+
+    private String readHeaders() throws IOException {
+        while (true) {
+            if (limit - pos >= 2 && buf[pos] == '\r' && buf[pos + 1] == '\n') {
+                pos += 2;
+                return "";
+            }
+            for (int i = pos; i + 3 < limit; i++) {
+                if (buf[i] == '\r' && buf[i + 1] == '\n' && buf[i + 2] == '\r' && buf[i + 3] == '\n') {
+                    String headers = new String(buf, pos, i - pos, StandardCharsets.UTF_8);
+                    pos = i + 4;
+                    return headers;
+                }
+            }
+            if (limit - pos > MAX_HEADER_BYTES) {
+                throw new MalformedException("multipart头部过大");
+            }
+            if (!fill()) {
+                throw new MalformedException("multipart头部不完整");
+            }
+        }
+    }
+
+    /**
+     * 边界之后允许有空白填充，随后必须是CRLF
+     */
+    private void skipLineEnd() throws IOException {
+        while (true) {
+            require(1);
+            if (buf[pos] == ' ' || buf[pos] == '\t') {
+                pos++;
+            } else {
+                break;
+            }
+        }
+        require(2);
+        if (buf[pos] != '\r' || buf[pos + 1] != '\n') {
+            throw new MalformedException("multipart边界格式错误");
+        }
+        pos += 2;
+    }
+
+    private void require(int count) throws IOException {
+        while (limit - pos < count) {
+            if (!fill()) {
+                throw new MalformedException("multipart数据不完整");
+            }
+        }
+    }
+
+    /**
+     * 把未消费的字节移到缓冲区开头并继续读取，流结束时返回false
+     */
+    private boolean fill() throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        if (limit == buf.length) {
+            // 缓冲区里全是未消费的字节，再读也取不到数据，继续循环会卡死请求线程
+            throw new MalformedException("multipart缓冲区已满");
+        }
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            return false;
+        }
+        totalRead += n;
+        if (totalRead > maxBytes) {
+            throw new TooLargeException(maxBytes);
+        }
+        limit += n;
+        return true;
+    }
+
+    private static String dispositionParameter(String disposition, String parameter) {
+        for (String item : disposition.split(";")) {
+            item = item.trim();
+            int equals = item.indexOf('=');
+            if (equals < 0 || !item.substring(0, equals).trim().equalsIgnoreCase(parameter)) {
+                continue;
+            }
+            String value = item.substring(equals + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            return value;
+        }
+        return null;
+    }
+
+    public static class Part {
+        private final String name;
+        private final String filename;
+        private final String contentType;
+        private final Path file;
+        private final long size;
+        private final String value;
+
+        Part(String name, String filename, String contentType, Path file, long size, String value) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.file = file;
+            this.size = size;
+            this.value = value;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * 上传文件名，普通表单字段返回null
+         */
+        public String filename() {
+            return filename;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        /**
+         * 文件部分内容所在的临时文件，普通表单字段返回null
+         */
+        public Path file() {
+            return file;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        /**
+         * 普通表单字段的值，文件部分返回null
+         */
+        public String value() {
+            return value;
+        }
+
+        public boolean isFile() {
+            return file != null;
+        }
+
+        public void delete() {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    System.err.println("⚠ 删除上传临时文件失败: " + file + " (" + e.getMessage() + ")");
+                }
+            }
+        }
+    }
+
+    public static class MalformedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public MalformedException(String message) {
+            super(message);
+        }
+    }
+
+    public static class TooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        public TooLargeException(long maxBytes) {
+            super("上传内容超过限制 (" + maxBytes / (1024 * 1024) + " MB)");
+        }
+    }
+}
\ No newline at end of file
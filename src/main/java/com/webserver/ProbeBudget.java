@@ -0,0 +1,34 @@
+package com.webserver;
+
+/**
+ * 所有监控目标共享的探测预算(令牌桶)。
+ * 令牌按每秒 rate 个匀速补充，最多积累 rate 个；没有令牌时预先扣除并返回需要等待的时间，
+ * 调用方推迟到那个时刻再发送，所以预算不足时检查被延后而不是被丢弃。
+ */
+public class ProbeBudget {
+    private final double rate;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    public ProbeBudget(int rate) {
+        this.rate = rate;
+        this.capacity = rate;
+        this.tokens = rate;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * 取一个令牌，返回发送前需要等待的纳秒数，0表示可以立即发送
+     */
+    public synchronized long reserve() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) / 1e9 * rate);
+        lastRefill = now;
+        tokens -= 1;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens / rate * 1e9);
+    }
+}
\ No newline at end of file
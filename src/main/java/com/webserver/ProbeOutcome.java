@@ -0,0 +1,56 @@
+package com.webserver;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import javax.net.ssl.SSLException;
+
+/**
+ * 一次探测的结果分类
+ */
+public enum ProbeOutcome {
+    OK("正常"),
+    DNS("DNS解析失败"),
+    CONNECT("连接失败"),
+    TIMEOUT("超时"),
+    HTTP_STATUS("HTTP错误状态"),
+    OTHER("其他错误"),
+    TLS("TLS握手失败"),
+    CONTENT("内容校验失败");
+
+    private final String label;
+
+    ProbeOutcome(String label) {
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    /**
+     * 状态码 >= 400 视为失败
+     */
+    public static ProbeOutcome ofStatus(int statusCode) {
+        return statusCode >= 400 ? HTTP_STATUS : OK;
+    }
+
+    /**
+     * 按 HttpProbe 在各阶段抛出的异常类型判断失败原因
+     */
+    public static ProbeOutcome classify(Throwable error) {
+        if (error instanceof SocketTimeoutException) {
+            return TIMEOUT;
+        }
+        if (error instanceof UnknownHostException) {
+            return DNS;
+        }
+        if (error instanceof ConnectException) {
+            return CONNECT;
+        }
+        if (error instanceof SSLException) {
+            return TLS;
+        }
+        return OTHER;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,144 @@
+package com.webserver;
+
+import java.util.Arrays;
+
+/**
+ * 单个监控目标最近探测结果的环形缓冲区，用于计算滑动窗口（1分钟/5分钟/1小时）内的统计。
+ * 样本保存在定长的基本类型数组里，记录时只写三个数组元素，不分配对象；
+ * 统计在读取时按时间戳扫描，容量不足以覆盖整个窗口时只统计仍在缓冲区中的样本。
+ */
+public class ProbeWindow {
+    private static final ProbeOutcome[] OUTCOMES = ProbeOutcome.values();
+
+    private final long[] timestamps;
+    private final int[] latencies;
+    private final byte[] outcomes;
+    private int next = 0;
+    private int size = 0;
+
+    public ProbeWindow(int capacity) {
+        this.timestamps = new long[capacity];
+        this.latencies = new int[capacity];
+        this.outcomes = new byte[capacity];
+    }
+
+    /**
+     * 覆盖 windowMillis 所需的容量：按检查间隔估算样本数，留出余量并限制上限
+     */
+    public static int capacityFor(long windowMillis, long intervalMillis) {
+        long samples = windowMillis / Math.max(1, intervalMillis) + 16;
+        return (int) Math.max(64, Math.min(samples, 65536));
+    }
+
+    /**
+     * @param latencyMillis 响应时间，失败的探测传 -1
+     */
+    public synchronized void record(long timeMillis, long latencyMillis, ProbeOutcome outcome) {
+        timestamps[next] = timeMillis;
+        latencies[next] = (int) Math.min(latencyMillis, Integer.MAX_VALUE);
+        outcomes[next] = (byte) outcome.ordinal();
+        next = (next + 1) % timestamps.length;
+        if (size < timestamps.length) {
+            size++;
+        }
+    }
+
+    /**
+     * 统计最近 windowMillis 内的样本
+     */
+    public synchronized Stats stats(long windowMillis, long nowMillis) {
+        long since = nowMillis - windowMillis;
+        int[] okLatencies = new int[size];
+        int okCount = 0;
+        int total = 0;
+        long oldest = nowMillis;
+        int[] byOutcome = new int[OUTCOMES.length];
+        // 从最新的样本往回扫描，遇到窗口外的样本即停止
+        for (int i = 0; i < size; i++) {
+            int index = Math.floorMod(next - 1 - i, timestamps.length);
+            if (timestamps[index] < since) {
+                break;
+            }
+            total++;
+            oldest = timestamps[index];
+            byOutcome[outcomes[index]]++;
+            if (outcomes[index] == ProbeOutcome.OK.ordinal()) {
+                okLatencies[okCount++] = latencies[index];
+            }
+        }
+        Arrays.sort(okLatencies, 0, okCount);
+        return new Stats(total, byOutcome, okLatencies, okCount, nowMillis - oldest);
+    }
+
+    /**
+     * 窗口统计结果，延迟分位数只基于成功的探测
+     */
+    public static class Stats {
+        private final int total;
+        private final int[] byOutcome;
+        private final int[] sortedLatencies;
+        private final int latencyCount;
+        private final long coveredMillis;
+
+        Stats(int total, int[] byOutcome, int[] sortedLatencies, int latencyCount, long coveredMillis) {
+            this.total = total;
+            this.byOutcome = byOutcome;
+            this.sortedLatencies = sortedLatencies;
+            this.latencyCount = latencyCount;
+            this.coveredMillis = coveredMillis;
+        }
+
+        public int total() {
+            return total;
+        }
+
+        public int count(ProbeOutcome outcome) {
+            return byOutcome[outcome.ordinal()];
+        }
+
+        public int failures() {
+            return total - count(ProbeOutcome.OK);
+        }
+
+        /**
+         * 成功探测占比(0~1)，窗口内没有样本时返回 NaN
+         */
+        public double successRatio() {
+            return total == 0 ? Double.NaN : (double) count(ProbeOutcome.OK) / total;
+        }
+
+        /**
+         * 成功探测响应时间的分位数(毫秒)，没有成功样本时返回 -1
+         */
+        public int percentile(double quantile) {
+            if (latencyCount == 0) {
+                return -1;
+            }
+            int rank = (int) Math.ceil(quantile * latencyCount);
+            return sortedLatencies[Math.max(0, Math.min(latencyCount - 1, rank - 1))];
+        }
+
+        /**
+         * 窗口内最早样本距今的时长，小于窗口长度说明监控运行时间不足或缓冲区容量不足
+         */
+        public long coveredMillis() {
+            return coveredMillis;
+        }
+
+        /**
+         * 失败原因分布，例如 "超时 2, 连接失败 1"，没有失败时返回空字符串
+         */
+        public String describeFailures() {
+            StringBuilder sb = new StringBuilder();
+            for (ProbeOutcome outcome : OUTCOMES) {
+                if (outcome != ProbeOutcome.OK && byOutcome[outcome.ordinal()] > 0) {
+                    if (sb.length() > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(outcome.label()).append(' ').append(byOutcome[outcome.ordinal()]);
+                }
+            }
+            return sb.toString();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,256 @@
+package com.webserver;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * 采样进程树的资源占用。
+ * Linux 上读取 /proc/&lt;pid&gt;/stat(CPU时间、线程数)、status(VmRSS) 和 fd 目录(打开的文件描述符数)；
+ * 其他系统只能通过 ProcessHandle 得到CPU时间，内存、线程和文件描述符为 -1。
+ * CPU% 是两次采样之间的CPU时间除以墙钟时间，单核满载为 100%，所以多线程进程可以超过 100%。
+ * 不是线程安全的，由一个线程定期调用。
+ */
+public class ProcessSampler {
+    /** /proc/&lt;pid&gt;/stat 中CPU时间的单位，Linux 上 USER_HZ 固定为 100 */
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final Path PROC = Paths.get("/proc");
+
+    private final boolean procAvailable = Files.isReadable(PROC.resolve("self").resolve("stat"));
+    private Map<String, long[]> previous = new HashMap<>();
+
+    /**
+     * 采样 root 及其所有子孙进程。进程已退出时返回 null
+     */
+    public TreeUsage sample(ProcessHandle root) {
+        if (root == null || !root.isAlive()) {
+            return null;
+        }
+        List<ProcessHandle> handles = new ArrayList<>();
+        handles.add(root);
+        try (Stream<ProcessHandle> descendants = root.descendants()) {
+            descendants.forEach(handles::add);
+        }
+        long now = System.nanoTime();
+        Map<String, long[]> current = new HashMap<>();
+        List<Usage> processes = new ArrayList<>(handles.size());
+        for (ProcessHandle handle : handles) {
+            Usage usage;
+            try {
+                usage = procAvailable ? readProc(handle.pid()) : readHandle(handle);
+            } catch (NumberFormatException e) {
+                usage = null;
+            }
+            if (usage == null) {
+                // 采样期间退出
+                continue;
+            }
+            // 用启动时间区分被复用的 pid
+            String key = usage.pid + ":" + usage.startTime;
+            long[] last = previous.get(key);
+            if (last != null && now > last[1]) {
+                usage.cpuPercent = (usage.cpuNanos - last[0]) * 100.0 / (now - last[1]);
+            }
+            current.put(key, new long[]{usage.cpuNanos, now});
+            processes.add(usage);
+        }
+        previous = current;
+        return processes.isEmpty() ? null : new TreeUsage(processes);
+    }
+
+    /**
+     * 不再采样某个进程树时调用，之前的CPU时间不再有用
+     */
+    public void reset() {
+        previous = new HashMap<>();
+    }
+
+    private static Usage readProc(long pid) {
+        Path dir = PROC.resolve(Long.toString(pid));
+        String stat;
+        List<String> status;
+        try {
+            stat = Files.readString(dir.resolve("stat"), StandardCharsets.ISO_8859_1);
+            status = Files.readAllLines(dir.resolve("status"), StandardCharsets.ISO_8859_1);
+        } catch (IOException e) {
+            return null;
+        }
+        // 第2个字段是括号里的命令名，可能含空格，从最后一个右括号之后按空格切分，fields[0] 是第3个字段
+        int open = stat.indexOf('(');
+        int close = stat.lastIndexOf(')');
+        if (open < 0 || close < open) {
+            return null;
+        }
+        String[] fields = stat.substring(close + 2).trim().split(" ");
+        if (fields.length < 20) {
+            return null;
+        }
+        Usage usage = new Usage(pid, stat.substring(open + 1, close));
+        long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+        usage.cpuNanos = ticks * (1_000_000_000L / CLOCK_TICKS_PER_SECOND);
+        usage.threads = Integer.parseInt(fields[17]);
+        usage.startTime = Long.parseLong(fields[19]);
+        for (String line : status) {
+            if (line.startsWith("VmRSS:")) {
+                usage.rssBytes = Long.parseLong(line.substring(6).trim().split("\\s+")[0]) * 1024;
+                break;
+            }
+        }
+        // 僵尸进程没有 VmRSS，按0计
+        if (usage.rssBytes < 0) {
+            usage.rssBytes = 0;
+        }
+        usage.openFds = countEntries(dir.resolve("fd"));
+        return usage;
+    }
+
+    private static int countEntries(Path dir) {
+        int count = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path ignored : entries) {
+                count++;
+            }
+        } catch (IOException | SecurityException e) {
+            // 其他用户的进程没有权限读取
+            return -1;
+        }
+        return count;
+    }
+
+    private static Usage readHandle(ProcessHandle handle) {
+        ProcessHandle.Info info = handle.info();
+        Usage usage = new Usage(handle.pid(), info.command().map(c -> Paths.get(c).getFileName().toString()).orElse("?"));
+        usage.cpuNanos = info.totalCpuDuration().map(Duration::toNanos).orElse(0L);
+        usage.startTime = info.startInstant().map(i -> i.toEpochMilli()).orElse(0L);
+        return usage;
+    }
+
+    /**
+     * 单个进程的一次采样，首次采样时 CPU% 为 NaN
+     */
+    public static class Usage {
+        private final long pid;
+        private final String name;
+        private long startTime;
+        private long cpuNanos;
+        private double cpuPercent = Double.NaN;
+        private long rssBytes = -1;
+        private int threads = -1;
+        private int openFds = -1;
+
+        Usage(long pid, String name) {
+            this.pid = pid;
+            this.name = name;
+        }
+
+        public long pid() {
+            return pid;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public double cpuPercent() {
+            return cpuPercent;
+        }
+
+        public long rssBytes() {
+            return rssBytes;
+        }
+
+        public int threads() {
+            return threads;
+        }
+
+        public int openFds() {
+            return openFds;
+        }
+
+        @Override
+        public String toString() {
+            return "pid " + pid + " " + name + ": " + format(cpuPercent, rssBytes, threads, openFds);
+        }
+    }
+
+    /**
+     * 一个进程树的采样，合计值中未知(-1)的进程不计入
+     */
+    public static class TreeUsage {
+        private final List<Usage> processes;
+        private final long sampledAt = System.currentTimeMillis();
+        private double cpuPercent;
+        private long rssBytes = -1;
+        private int threads = -1;
+        private int openFds = -1;
+
+        TreeUsage(List<Usage> processes) {
+            this.processes = processes;
+            boolean cpuKnown = false;
+            for (Usage usage : processes) {
+                if (!Double.isNaN(usage.cpuPercent)) {
+                    cpuPercent += usage.cpuPercent;
+                    cpuKnown = true;
+                }
+                rssBytes = add(rssBytes, usage.rssBytes);
+                threads = (int) add(threads, usage.threads);
+                openFds = (int) add(openFds, usage.openFds);
+            }
+            if (!cpuKnown) {
+                cpuPercent = Double.NaN;
+            }
+        }
+
+        private static long add(long total, long value) {
+            if (value < 0) {
+                return total;
+            }
+            return total < 0 ? value : total + value;
+        }
+
+        public List<Usage> processes() {
+            return processes;
+        }
+
+        public long sampledAt() {
+            return sampledAt;
+        }
+
+        public double cpuPercent() {
+            return cpuPercent;
+        }
+
+        public long rssBytes() {
+            return rssBytes;
+        }
+
+        public int threads() {
+            return threads;
+        }
+
+        public int openFds() {
+            return openFds;
+        }
+
+        @Override
+        public String toString() {
+            return format(cpuPercent, rssBytes, threads, openFds) + " (" + processes.size() + " 个进程)";
+        }
+    }
+
+    static String format(double cpuPercent, long rssBytes, int threads, int openFds) {
+        return "CPU " + (Double.isNaN(cpuPercent) ? "-" : String.format("%.1f%%", cpuPercent))
+                + ", 内存 " + (rssBytes < 0 ? "-" : String.format("%.1f MB", rssBytes / (1024.0 * 1024.0)))
+                + ", 线程 " + (threads < 0 ? "-" : threads)
+                + ", 文件描述符 " + (openFds < 0 ? "-" : openFds);
+    }
+}
\ No newline at end of file
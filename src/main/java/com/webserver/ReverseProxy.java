@@ -0,0 +1,240 @@
+package com.webserver;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 把一个上下文(默认 /api)下的请求转发给脚本的工作进程，路径和查询串原样保留。
+ * 每次选择进行中请求最少的就绪工作进程；HttpClient 按端口复用 keep-alive 连接。
+ * 请求体和响应体都边读边转发，不在内存中缓冲，后端每次输出后立即刷新给客户端，流式响应不会被攒住。
+ */
+public class ReverseProxy implements HttpHandler {
+    /** 逐跳头部只对一条连接有效，不转发；其中部分 HttpClient 也不允许设置 */
+    private static final Set<String> HOP_BY_HOP = Set.of("connection", "keep-alive", "proxy-authenticate",
+            "proxy-authorization", "te", "trailer", "transfer-encoding", "upgrade", "host", "content-length",
+            "expect");
+
+    private final ScriptRunner scriptRunner;
+    private final ConfigManager configManager;
+    private final HttpClient client;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public ReverseProxy(ScriptRunner scriptRunner, ConfigManager configManager) {
+        this.scriptRunner = scriptRunner;
+        this.configManager = configManager;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(configManager.getProxyConnectTimeoutMillis()))
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try {
+            ScriptWorker worker = pick();
+            if (worker == null) {
+                exchange.getResponseHeaders().set("Retry-After", "5");
+                sendText(exchange, 503, "没有就绪的脚本工作进程\n");
+                return;
+            }
+            worker.outstanding().incrementAndGet();
+            try {
+                forward(exchange, worker);
+            } finally {
+                worker.outstanding().decrementAndGet();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 进行中请求最少的就绪工作进程，起点轮转，数量相同时请求依次分散到各进程
+     */
+    private ScriptWorker pick() {
+        if (!scriptRunner.isRunning()) {
+            return null;
+        }
+        List<ScriptWorker> workers = scriptRunner.getWorkers();
+        int size = workers.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        ScriptWorker best = null;
+        int bestOutstanding = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ScriptWorker worker = workers.get((start + i) % size);
+            int outstanding = worker.outstanding().get();
+            if (outstanding < bestOutstanding && worker.isReady()) {
+                best = worker;
+                bestOutstanding = outstanding;
+            }
+        }
+        return best;
+    }
+
+    private void forward(HttpExchange exchange, ScriptWorker worker) throws IOException {
+        URI incoming = exchange.getRequestURI();
+        URI target = URI.create("http://127.0.0.1:" + worker.port() + incoming.getRawPath()
+                + (incoming.getRawQuery() != null ? "?" + incoming.getRawQuery() : ""));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(target)
+                .timeout(Duration.ofSeconds(configManager.getProxyTimeoutSeconds()))
+                .method(exchange.getRequestMethod(), bodyPublisher(exchange));
+        copyRequestHeaders(exchange, builder);
+
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (HttpConnectTimeoutException | ConnectException e) {
+            failed.incrementAndGet();
+            sendText(exchange, 502, "连接脚本工作进程 #" + worker.id() + " 失败\n");
+            return;
+        } catch (HttpTimeoutException e) {
+            failed.incrementAndGet();
+            sendText(exchange, 504, "脚本工作进程 #" + worker.id() + " 在 "
+                    + configManager.getProxyTimeoutSeconds() + " 秒内未响应\n");
+            return;
+        } catch (IOException e) {
+            failed.incrementAndGet();
+            sendText(exchange, 502, "转发到脚本工作进程 #" + worker.id() + " 失败: " + e.getMessage() + "\n");
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        forwarded.incrementAndGet();
+
+        try (InputStream in = response.body()) {
+            Headers headers = exchange.getResponseHeaders();
+            Set<String> connectionTokens = connectionTokens(response.headers().allValues("Connection"));
+            for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+                String name = header.getKey().toLowerCase(Locale.ROOT);
+                if (!name.startsWith(":") && !HOP_BY_HOP.contains(name) && !connectionTokens.contains(name)) {
+                    headers.put(header.getKey(), header.getValue());
+                }
+            }
+            int status = response.statusCode();
+            long length = response.headers().firstValueAsLong("Content-Length").orElse(-1);
+            boolean noBody = "HEAD".equals(exchange.getRequestMethod()) || status == 204 || status == 304
+                    || length == 0;
+            // HttpServer 中 -1 表示没有响应体，0 表示长度未知、分块发送
+            exchange.sendResponseHeaders(status, noBody ? -1 : Math.max(length, 0));
+            if (noBody) {
+                return;
+            }
+            OutputStream out = exchange.getResponseBody();
+            byte[] buffer = new byte[16 * 1024];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+            out.close();
+        }
+    }
+
+    /**
+     * 有 Content-Length 时保留长度转发，分块上传仍分块转发，都没有时视为没有请求体
+     */
+    private static HttpRequest.BodyPublisher bodyPublisher(HttpExchange exchange) {
+        Headers headers = exchange.getRequestHeaders();
+        HttpRequest.BodyPublisher stream = HttpRequest.BodyPublishers.ofInputStream(exchange::getRequestBody);
+        String contentLength = headers.getFirst("Content-Length");
+        if (contentLength != null) {
+            try {
+                long length = Long.parseLong(contentLength.trim());
+                return length == 0 ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.fromPublisher(stream, length);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return headers.containsKey("Transfer-Encoding") ? stream : HttpRequest.BodyPublishers.noBody();
+    }
+
+    private static void copyRequestHeaders(HttpExchange exchange, HttpRequest.Builder builder) {
+        Headers headers = exchange.getRequestHeaders();
+        Set<String> connectionTokens = connectionTokens(headers.getOrDefault("Connection", List.of()));
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.ROOT);
+            if (HOP_BY_HOP.contains(name) || connectionTokens.contains(name) || name.startsWith("x-forwarded-")) {
+                continue;
+            }
+            for (String value : header.getValue()) {
+                try {
+                    builder.header(header.getKey(), value);
+                } catch (IllegalArgumentException ignored) {
+                    // HttpClient 不允许设置的头部
+                }
+            }
+        }
+        String client = exchange.getRemoteAddress().getAddress().getHostAddress();
+        String forwardedFor = headers.getFirst("X-Forwarded-For");
+        builder.header("X-Forwarded-For", forwardedFor != null ? forwardedFor + ", " + client : client);
+        builder.header("X-Forwarded-Proto", "http");
+        String host = headers.getFirst("Host");
+        if (host != null) {
+            builder.header("X-Forwarded-Host", host);
+        }
+    }
+
+    /**
+     * Connection 头中列出的头部同样只对这条连接有效
+     */
+    private static Set<String> connectionTokens(List<String> values) {
+        Set<String> tokens = new HashSet<>();
+        for (String value : values) {
+            for (String token : value.split(",")) {
+                tokens.add(token.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return tokens;
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /**
+     * 成功转发(收到后端响应头)的请求数
+     */
+    public long getForwarded() {
+        return forwarded.get();
+    }
+
+    /**
+     * 连接失败、超时等没有拿到后端响应的请求数
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+}
\ No newline at end of file
@@ -1,20 +1,62 @@
 package com.webserver;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 运行 run.sh / run.bat 的多个工作进程并在退出后重启。
+ * 第 i 个进程的 WORKER_PORT 为 script_base_port + i - 1。按 script_restart 策略重启，
+ * 连续快速退出时重启间隔指数增长，运行超过 script_stable_seconds 后退避清零；
+ * 在 script_crash_loop_window_seconds 内退出超过 script_crash_loop_restarts 次视为崩溃循环，
+ * 停止自动重启，直到手动 'restart run'。
+ * 所有进程的输出按行写入共享的 LogRing，由单独的线程每隔一小段时间成批回显到控制台，
+ * 每秒最多回显 script_log_echo_lines 行，超出的只计数，完整输出通过 /logs 查看。
+ * 每隔 script_sample_seconds 采样各工作进程树的CPU、内存、线程和文件描述符，连续超过软限制时告警或重启。
+ * 配置了 script_ready_check 时，进程通过检查后才算就绪；超时未就绪或就绪后连续存活检查失败，
+ * 结束进程并按一次退出处理(同样受退避和崩溃循环限制)。
+ */
 public class ScriptRunner {
-    private Process process;
-    private Thread outputReader;
-    private boolean isRunning = false;
+    private static final long ECHO_INTERVAL_MILLIS = 200;
+    private static final long READY_POLL_MILLIS = 250;
 
-    public boolean start() {
+    private final ConfigManager configManager;
+    private final EventHub events;
+    private final LogRing log;
+    private volatile List<ScriptWorker> workers = Collections.emptyList();
+    private ScheduledExecutorService supervisor;
+    private String scriptName;
+    private List<String> command;
+    private volatile HealthCheck healthCheck;
+    private final Object readyLock = new Object();
+    private volatile boolean isRunning = false;
+
+    public ScriptRunner(ConfigManager configManager, EventHub events) {
+        this.configManager = configManager;
+        this.events = events;
+        this.log = new LogRing(configManager.getScriptLogBufferKilobytes() * 1024);
+        Thread echo = new Thread(this::echoLoop, "script-log-echo");
+        echo.setDaemon(true);
+        echo.start();
+    }
+
+    public synchronized boolean start() {
         if (isRunning) {
             System.out.println("ℹ 脚本已在运行中");
             return true;
         }
 
         String os = System.getProperty("os.name").toLowerCase();
-        String scriptName = os.contains("win") ? "run.bat" : "run.sh";
+        scriptName = os.contains("win") ? "run.bat" : "run.sh";
 
         File scriptFile = new File(scriptName);
         if (!scriptFile.exists()) {
@@ -22,69 +64,72 @@ public class ScriptRunner {
             return false;
         }
 
-        try {
-            ProcessBuilder processBuilder;
-            if (os.contains("win")) {
-                processBuilder = new ProcessBuilder("cmd", "/c", scriptName);
-            } else {
-                Runtime.getRuntime().exec("chmod +x " + scriptName);
-                processBuilder = new ProcessBuilder("sh", scriptName);
-            }
-
-            processBuilder.directory(new File("."));
-            processBuilder.redirectErrorStream(true);
-
-            process = processBuilder.start();
-            isRunning = true;
-
-            outputReader = new Thread(() -> {
-                try (BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(process.getInputStream()))) {
-
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        System.out.println("[脚本] " + line);
-                    }
-                } catch (IOException e) {
-                    if (isRunning) {
-                        System.err.println("✗ 读取脚本输出时出错: " + e.getMessage());
-                    }
-                }
-
-                isRunning = false;
-                try {
-                    int exitCode = process.waitFor();
-                    System.out.println("✓ 脚本执行完成，退出码: " + exitCode);
-                } catch (InterruptedException e) {
-                    System.err.println("✗ 等待脚本完成时被中断");
-                    Thread.currentThread().interrupt();
-                }
-            });
-            outputReader.start();
+        if (os.contains("win")) {
+            command = List.of("cmd", "/c", scriptName);
+        } else {
+            scriptFile.setExecutable(true);
+            command = List.of("sh", scriptName);
+        }
 
-            System.out.println("✓ 脚本已启动: " + scriptName);
-            return true;
+        healthCheck = configManager.getScriptReadyCheck();
+        int count = configManager.getScriptWorkers();
+        int basePort = configManager.getScriptBasePort();
+        List<ScriptWorker> created = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            created.add(new ScriptWorker(i, basePort + i - 1, count));
+        }
+        supervisor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "script-supervisor");
+            t.setDaemon(true);
+            return t;
+        });
+        workers = Collections.unmodifiableList(created);
+        isRunning = true;
+        int sampleSeconds = configManager.getScriptSampleSeconds();
+        supervisor.scheduleWithFixedDelay(this::sampleWorkers, sampleSeconds, sampleSeconds, TimeUnit.SECONDS);
 
-        } catch (IOException e) {
-            System.err.println("✗ 启动脚本失败: " + e.getMessage());
-            return false;
+        int started = 0;
+        for (ScriptWorker worker : created) {
+            if (launch(worker)) {
+                started++;
+            }
         }
+        System.out.println("✓ 脚本已启动: " + scriptName + " (" + started + "/" + count + " 个工作进程, 端口 "
+                + basePort + (count > 1 ? "-" + (basePort + count - 1) : "") + ")"
+                + (healthCheck != null ? ", 就绪检查 " + healthCheck : ""));
+        return started > 0;
     }
 
     public void stop() {
-        if (process != null && isRunning) {
+        List<ScriptWorker> current;
+        synchronized (this) {
+            if (!isRunning) {
+                return;
+            }
             isRunning = false;
-            process.destroy();
+            // 先停止调度，等待中的重启不再执行
+            supervisor.shutdownNow();
+            supervisor = null;
+            current = workers;
+        }
+        // 并行结束各进程，总等待时间不随进程数增长
+        List<Thread> stoppers = new ArrayList<>();
+        for (ScriptWorker worker : current) {
+            stoppers.add(Thread.ofVirtual().start(() -> {
+                worker.terminate(3000);
+                publishState(worker);
+            }));
+        }
+        for (Thread stopper : stoppers) {
             try {
-                if (outputReader != null && outputReader.isAlive()) {
-                    outputReader.join(3000);
-                }
+                stopper.join();
             } catch (InterruptedException e) {
                 System.err.println("✗ 停止脚本时被中断");
                 Thread.currentThread().interrupt();
+                return;
             }
-            System.out.println("✓ 脚本已停止");
         }
+        System.out.println("✓ 脚本已停止");
     }
 
     public void restart() {
@@ -93,7 +138,417 @@ public class ScriptRunner {
         start();
     }
 
+    /**
+     * 重启单个工作进程并清除它的崩溃记录，用于手动恢复崩溃循环中的进程
+     */
+    public boolean restartWorker(int id) {
+        ScriptWorker worker = getWorker(id);
+        if (worker == null || !isRunning) {
+            return false;
+        }
+        System.out.println("🔄 正在重启工作进程 #" + id + "...");
+        worker.terminate(3000);
+        worker.resetHistory();
+        return launch(worker);
+    }
+
+    private boolean launch(ScriptWorker worker) {
+        String prefix = workers.size() > 1 ? "[脚本#" + worker.id() + "] " : "[脚本] ";
+        long generation;
+        HealthCheck check = healthCheck;
+        try {
+            generation = worker.launch(command, log, prefix.getBytes(StandardCharsets.UTF_8),
+                    check != null ? check.pattern() : null);
+        } catch (IOException e) {
+            System.err.println("✗ 启动脚本失败 (#" + worker.id() + "): " + e.getMessage());
+            onExit(worker, worker.markLaunchFailed(), -1);
+            return false;
+        }
+        publishState(worker);
+        worker.onExit(generation, exitCode -> onExit(worker, generation, exitCode));
+        Thread.ofVirtual().name("script-health-" + worker.id()).start(() -> watch(worker, generation, check));
+        return true;
+    }
+
+    /**
+     * 等待就绪，之后定期做存活检查，直到这一代进程结束
+     */
+    private void watch(ScriptWorker worker, long generation, HealthCheck check) {
+        if (check == null) {
+            if (worker.markReady(generation)) {
+                signalReady();
+            }
+            return;
+        }
+        int checkTimeout = configManager.getScriptCheckTimeoutMillis();
+        int readyTimeoutSeconds = configManager.getScriptReadyTimeoutSeconds();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(readyTimeoutSeconds);
+        try {
+            while (true) {
+                if (worker.generation() != generation || !worker.isAlive()) {
+                    return;
+                }
+                boolean passed = check.type() == HealthCheck.Type.LOG
+                        ? worker.logMatched() : check.check(worker.port(), checkTimeout);
+                if (passed) {
+                    break;
+                }
+                if (System.nanoTime() > deadline) {
+                    unhealthy(worker, generation, "启动后 " + readyTimeoutSeconds + " 秒内未通过就绪检查 (" + check + ")");
+                    return;
+                }
+                Thread.sleep(READY_POLL_MILLIS);
+            }
+            if (!worker.markReady(generation)) {
+                return;
+            }
+            System.out.println("✓ 工作进程 #" + worker.id() + " 已就绪 (用时 "
+                    + String.format("%.1f", worker.readyAfterMillis() / 1000.0) + " 秒)");
+            publishState(worker);
+            signalReady();
+            if (check.type() == HealthCheck.Type.LOG) {
+                return;
+            }
+
+            long interval = configManager.getScriptLiveIntervalSeconds() * 1000L;
+            int maxFailures = configManager.getScriptLiveFailures();
+            int failures = 0;
+            while (true) {
+                Thread.sleep(interval);
+                if (worker.generation() != generation || !worker.isAlive()) {
+                    return;
+                }
+                if (check.check(worker.port(), checkTimeout)) {
+                    failures = 0;
+                } else if (++failures >= maxFailures) {
+                    unhealthy(worker, generation, "连续 " + failures + " 次存活检查失败 (" + check + ")");
+                    return;
+                } else {
+                    System.out.println("⚠ 工作进程 #" + worker.id() + " 存活检查失败 (" + failures + "/" + maxFailures + ")");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 检查失败的进程按一次退出处理: 结束它，再按退避和崩溃循环规则决定何时重启
+     */
+    private void unhealthy(ScriptWorker worker, long generation, String reason) {
+        if (!isRunning || worker.generation() != generation) {
+            return;
+        }
+        if ("never".equals(configManager.getScriptRestart())) {
+            System.out.println("⚠ 工作进程 #" + worker.id() + " " + reason + " (script_restart=never，不重启)");
+            return;
+        }
+        System.out.println("✗ 工作进程 #" + worker.id() + " " + reason + "，正在结束并重启");
+        worker.terminate(3000);
+        restartLater(worker, worker.failed());
+    }
+
+    private void signalReady() {
+        synchronized (readyLock) {
+            readyLock.notifyAll();
+        }
+    }
+
+    /**
+     * 等待所有工作进程就绪，返回就绪的进程数
+     */
+    public int awaitReady(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (readyLock) {
+            while (isRunning && getReadyCount() < workers.size()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    break;
+                }
+                // 就绪的进程可能随后退出，不完全依赖通知
+                readyLock.wait(Math.min(remaining, 1000));
+            }
+        }
+        return getReadyCount();
+    }
+
+    public boolean hasReadyCheck() {
+        return healthCheck != null;
+    }
+
+    private void onExit(ScriptWorker worker, long generation, int exitCode) {
+        long uptime = worker.exited(generation, exitCode);
+        if (uptime < 0) {
+            // 主动停止或已被替换的进程
+            return;
+        }
+        System.out.println((exitCode == 0 ? "✓" : "✗") + " 工作进程 #" + worker.id() + " 已退出，退出码: "
+                + exitCode + " (运行 " + ScriptWorker.formatDuration(uptime) + ")");
+        String policy = configManager.getScriptRestart();
+        if (!isRunning || "never".equals(policy) || ("on-failure".equals(policy) && exitCode == 0)) {
+            publishState(worker);
+            return;
+        }
+        restartLater(worker, uptime);
+    }
+
+    /**
+     * 按退避安排重启，短时间内退出过多时进入崩溃循环不再重启
+     */
+    private void restartLater(ScriptWorker worker, long uptime) {
+        long generation = worker.generation();
+        long windowMillis = configManager.getScriptCrashLoopWindowSeconds() * 1000L;
+        int maxRestarts = configManager.getScriptCrashLoopRestarts();
+        int exits = worker.exitsWithin(windowMillis);
+        if (exits > maxRestarts) {
+            worker.markCrashLoop();
+            System.out.println("⚠ 工作进程 #" + worker.id() + " " + windowMillis / 1000 + " 秒内退出 " + exits
+                    + " 次，判定为崩溃循环，停止自动重启 (修复后执行 'restart run " + worker.id() + "')");
+            publishState(worker);
+            return;
+        }
+
+        boolean stable = uptime >= configManager.getScriptStableSeconds() * 1000L;
+        long delay = worker.scheduleRestart(stable, configManager.getScriptBackoffInitialMillis(),
+                configManager.getScriptBackoffMaxSeconds() * 1000L);
+        System.out.println("🔄 工作进程 #" + worker.id() + " 将在 " + String.format("%.1f", delay / 1000.0) + " 秒后重启");
+        publishState(worker);
+        synchronized (this) {
+            if (supervisor == null) {
+                return;
+            }
+            try {
+                supervisor.schedule(() -> {
+                    if (isRunning && worker.isAwaitingRestart(generation)) {
+                        launch(worker);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // 脚本已停止
+            }
+        }
+    }
+
+    /**
+     * 采样所有工作进程并检查软限制，在调度线程上执行
+     */
+    private void sampleWorkers() {
+        long rssLimit = configManager.getScriptRssLimitMegabytes() * 1024L * 1024L;
+        int cpuLimit = configManager.getScriptCpuLimitPercent();
+        for (ScriptWorker worker : workers) {
+            ProcessSampler.TreeUsage usage = worker.sample();
+            if (usage == null) {
+                continue;
+            }
+            publishState(worker);
+            String exceeded = null;
+            if (rssLimit > 0 && usage.rssBytes() > rssLimit) {
+                exceeded = String.format("内存 %.1f MB 超过限制 %d MB",
+                        usage.rssBytes() / (1024.0 * 1024.0), rssLimit / (1024 * 1024));
+            } else if (cpuLimit > 0 && usage.cpuPercent() > cpuLimit) {
+                exceeded = String.format("CPU %.1f%% 超过限制 %d%%", usage.cpuPercent(), cpuLimit);
+            }
+            int samples = worker.overLimit(exceeded != null);
+            if (samples < configManager.getScriptLimitSamples()) {
+                continue;
+            }
+            if ("restart".equals(configManager.getScriptLimitAction())) {
+                System.out.println("⚠ 工作进程 #" + worker.id() + " " + exceeded + " (连续 " + samples + " 次采样)，正在重启");
+                worker.overLimit(false);
+                // 结束进程最多等待3秒，不占用调度线程
+                Thread.ofVirtual().name("script-recycle-" + worker.id()).start(() -> recycle(worker));
+            } else if (samples == configManager.getScriptLimitSamples()) {
+                // 持续超限只在开始时告警一次，恢复后再次超限会重新告警
+                System.out.println("⚠ 工作进程 #" + worker.id() + " " + exceeded + " (连续 " + samples + " 次采样)");
+            }
+        }
+    }
+
+    private void recycle(ScriptWorker worker) {
+        worker.terminate(3000);
+        if (isRunning) {
+            worker.countRestart();
+            launch(worker);
+        }
+    }
+
+    /**
+     * 在指标接口上按工作进程导出资源占用
+     */
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.registerGaugeFamily("script_worker_cpu_percent", "Worker process tree CPU usage, 100 = one core.",
+                "worker", () -> usageByWorker(ProcessSampler.TreeUsage::cpuPercent));
+        metrics.registerGaugeFamily("script_worker_rss_bytes", "Worker process tree resident memory.",
+                "worker", () -> usageByWorker(usage -> usage.rssBytes() < 0 ? Double.NaN : usage.rssBytes()));
+        metrics.registerGaugeFamily("script_worker_threads", "Worker process tree thread count.",
+                "worker", () -> usageByWorker(usage -> usage.threads() < 0 ? Double.NaN : usage.threads()));
+        metrics.registerGaugeFamily("script_worker_open_fds", "Worker process tree open file descriptors.",
+                "worker", () -> usageByWorker(usage -> usage.openFds() < 0 ? Double.NaN : usage.openFds()));
+        metrics.registerGaugeFamily("script_worker_processes", "Processes in the worker process tree.",
+                "worker", () -> usageByWorker(usage -> usage.processes().size()));
+        metrics.registerGaugeFamily("script_worker_restarts", "Times the worker was restarted by the supervisor.",
+                "worker", () -> {
+                    Map<String, Double> values = new LinkedHashMap<>();
+                    for (ScriptWorker worker : workers) {
+                        values.put(String.valueOf(worker.id()), (double) worker.restarts());
+                    }
+                    return values;
+                });
+        metrics.registerGaugeFamily("script_worker_proxy_outstanding", "Requests being proxied to the worker.",
+                "worker", () -> {
+                    Map<String, Double> values = new LinkedHashMap<>();
+                    for (ScriptWorker worker : workers) {
+                        values.put(String.valueOf(worker.id()), (double) worker.outstanding().get());
+                    }
+                    return values;
+                });
+    }
+
+    private Map<String, Double> usageByWorker(ToDoubleFunction<ProcessSampler.TreeUsage> value) {
+        Map<String, Double> values = new LinkedHashMap<>();
+        for (ScriptWorker worker : workers) {
+            ProcessSampler.TreeUsage usage = worker.usage();
+            if (usage != null && worker.isAlive()) {
+                values.put(String.valueOf(worker.id()), value.applyAsDouble(usage));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 成批把新输出写到控制台。每秒超过限额的行不回显，下一秒开始时报告省略了多少行；
+     * 控制台慢到落后一整个缓冲区时，被覆盖的部分直接跳过
+     */
+    private void echoLoop() {
+        byte[] chunk = new byte[64 * 1024];
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long cursor = log.end();
+        long windowStart = System.currentTimeMillis();
+        int echoed = 0;
+        long omitted = 0;
+        long skippedBytes = 0;
+        while (true) {
+            try {
+                log.await(cursor, 1000, log.epoch());
+                Thread.sleep(ECHO_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now - windowStart >= 1000) {
+                if (omitted > 0 || skippedBytes > 0) {
+                    System.out.println("ℹ 脚本输出过多，控制台省略 " + omitted + " 行"
+                            + (skippedBytes > 0 ? " (另有 " + skippedBytes + " 字节未及回显)" : "")
+                            + "，完整输出见 " + configManager.getScriptLogPath());
+                }
+                windowStart = now;
+                echoed = 0;
+                omitted = 0;
+                skippedBytes = 0;
+            }
+            int limit = configManager.getScriptLogEchoLines();
+            long aligned = log.align(cursor);
+            skippedBytes += aligned - cursor;
+            cursor = aligned;
+            out.reset();
+            int n;
+            while ((n = log.read(cursor, chunk)) > 0) {
+                // 缓冲区里都是完整的行，只有读满 chunk 时末尾可能截断一行，留到下一轮
+                int lineStart = 0;
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] == '\n') {
+                        if (echoed < limit) {
+                            out.write(chunk, lineStart, i + 1 - lineStart);
+                            echoed++;
+                        } else {
+                            omitted++;
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                cursor += lineStart;
+                if (lineStart == 0) {
+                    break;
+                }
+            }
+            if (out.size() > 0) {
+                System.out.write(out.toByteArray(), 0, out.size());
+                System.out.flush();
+            }
+        }
+    }
+
+    private void publishState(ScriptWorker worker) {
+        EventHub.Json json = new EventHub.Json()
+                .put("script", scriptName)
+                .put("worker", worker.id())
+                .put("workers", workers.size())
+                .put("port", worker.port())
+                .put("running", worker.isAlive())
+                .put("ready", worker.isReady())
+                .put("state", worker.state().label())
+                .put("restarts", worker.restarts())
+                .put("time", System.currentTimeMillis());
+        if (worker.lastExitCode() != null) {
+            json.put("exitCode", worker.lastExitCode());
+        }
+        ProcessSampler.TreeUsage usage = worker.usage();
+        if (usage != null && worker.isAlive()) {
+            json.put("cpuPercent", usage.cpuPercent())
+                    .put("rssBytes", usage.rssBytes())
+                    .put("threads", usage.threads())
+                    .put("openFds", usage.openFds());
+        }
+        events.publish("script", "script:" + worker.id(), json.toString());
+    }
+
     public boolean isRunning() {
         return isRunning;
     }
+
+    /**
+     * 所有工作进程的输出，脚本重启后保留
+     */
+    public LogRing getLog() {
+        return log;
+    }
+
+    public List<ScriptWorker> getWorkers() {
+        return workers;
+    }
+
+    public ScriptWorker getWorker(int id) {
+        for (ScriptWorker worker : workers) {
+            if (worker.id() == id) {
+                return worker;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 已就绪的工作进程数
+     */
+    public int getReadyCount() {
+        int ready = 0;
+        for (ScriptWorker worker : workers) {
+            if (worker.isReady()) {
+                ready++;
+            }
+        }
+        return ready;
+    }
+
+    /**
+     * 正在运行的工作进程数
+     */
+    public int getAliveCount() {
+        int alive = 0;
+        for (ScriptWorker worker : workers) {
+            if (worker.isAlive()) {
+                alive++;
+            }
+        }
+        return alive;
+    }
 }
\ No newline at end of file
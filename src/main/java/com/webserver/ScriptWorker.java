@@ -0,0 +1,410 @@
+package com.webserver;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.regex.Pattern;
+
+/**
+ * 脚本的一个工作进程及其重启记录。
+ * 进程通过环境变量 WORKER_ID、WORKER_PORT、WORKER_COUNT 区分自己，各自监听不同端口。
+ * 进程退出后是否重启、何时重启由 ScriptRunner 决定，这里只记录状态和最近的退出时间。
+ * 运行中的进程在通过就绪检查之前不算就绪，不接收转发的请求。
+ */
+public class ScriptWorker {
+    private static final int MAX_LINE_BYTES = 4096;
+
+    /**
+     * 工作进程状态
+     */
+    public enum State {
+        RUNNING("运行中"),
+        BACKOFF("等待重启"),
+        CRASH_LOOP("崩溃循环，已暂停重启"),
+        EXITED("已退出"),
+        STOPPED("已停止");
+
+        private final String label;
+
+        State(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    private final int id;
+    private final int port;
+    private final int count;
+    private final Deque<Long> recentExits = new ArrayDeque<>();
+    private final ProcessSampler sampler = new ProcessSampler();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private volatile ProcessSampler.TreeUsage usage;
+    private int samplesOverLimit;
+    private volatile boolean ready;
+    private volatile boolean logMatched;
+    private long readyAfterMillis;
+    private Process process;
+    private State state = State.STOPPED;
+    private long generation;
+    private long startedAt;
+    private long restartAt;
+    private int restarts;
+    private int quickExits;
+    private Integer lastExitCode;
+
+    ScriptWorker(int id, int port, int count) {
+        this.id = id;
+        this.port = port;
+        this.count = count;
+    }
+
+    /**
+     * 启动进程，返回本次启动的代号，用于识别过期的退出回调。输出按行写入 log，每行加上 prefix；
+     * readyPattern 不为 null 时检查每行输出，直到出现匹配的行
+     */
+    synchronized long launch(List<String> command, LogRing log, byte[] prefix, Pattern readyPattern)
+            throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command);
+        processBuilder.directory(new File("."));
+        processBuilder.redirectErrorStream(true);
+        Map<String, String> env = processBuilder.environment();
+        env.put("WORKER_ID", String.valueOf(id));
+        env.put("WORKER_PORT", String.valueOf(port));
+        env.put("WORKER_COUNT", String.valueOf(count));
+
+        process = processBuilder.start();
+        sampler.reset();
+        usage = null;
+        samplesOverLimit = 0;
+        ready = false;
+        logMatched = false;
+        state = State.RUNNING;
+        startedAt = System.currentTimeMillis();
+        generation++;
+
+        Process current = process;
+        Thread outputReader = new Thread(() -> {
+            try (InputStream in = current.getInputStream()) {
+                copyLines(in, log, prefix, readyPattern);
+            } catch (IOException e) {
+                if (current.isAlive()) {
+                    System.err.println("✗ 读取脚本输出时出错: " + e.getMessage());
+                }
+            }
+        }, "script-output-" + id);
+        outputReader.setDaemon(true);
+        outputReader.start();
+        return generation;
+    }
+
+    /**
+     * 把输出按行写入缓冲区。这个线程只做内存拷贝，不碰控制台，脚本不会因为控制台慢而阻塞在管道上。
+     * 超过 MAX_LINE_BYTES 的行被拆成多行
+     */
+    private void copyLines(InputStream in, LogRing log, byte[] prefix, Pattern readyPattern) throws IOException {
+        // 匹配到之后不再解码，之后的读取路径上没有额外开销
+        Pattern pending = readyPattern;
+        byte[] line = new byte[MAX_LINE_BYTES];
+        byte[] chunk = new byte[8192];
+        int length = 0;
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            for (int i = 0; i < n; i++) {
+                byte b = chunk[i];
+                if (b == '\n' || length == line.length) {
+                    int end = length > 0 && line[length - 1] == '\r' ? length - 1 : length;
+                    log.appendLine(prefix, line, 0, end);
+                    if (pending != null && pending.matcher(new String(line, 0, end, StandardCharsets.UTF_8)).find()) {
+                        logMatched = true;
+                        pending = null;
+                    }
+                    length = 0;
+                    if (b == '\n') {
+                        continue;
+                    }
+                }
+                line[length++] = b;
+            }
+        }
+        if (length > 0) {
+            log.appendLine(prefix, line, 0, length);
+        }
+    }
+
+    /**
+     * 启动失败按立即退出处理，返回新的代号，这样失败的启动同样计入退避和崩溃循环
+     */
+    synchronized long markLaunchFailed() {
+        process = null;
+        state = State.EXITED;
+        startedAt = System.currentTimeMillis();
+        return ++generation;
+    }
+
+    /**
+     * 在代号为 launchedGeneration 的进程退出时回调退出码
+     */
+    synchronized void onExit(long launchedGeneration, IntConsumer listener) {
+        if (launchedGeneration != generation || process == null) {
+            return;
+        }
+        process.onExit().thenAccept(p -> listener.accept(p.exitValue()));
+    }
+
+    /**
+     * 结束进程及其子进程，最多等待 timeoutMillis 后强制结束
+     */
+    void terminate(long timeoutMillis) {
+        Process current;
+        synchronized (this) {
+            current = process;
+            // 先改代号，进程退出回调据此知道这是主动停止
+            generation++;
+            state = State.STOPPED;
+            restartAt = 0;
+        }
+        if (current == null || !current.isAlive()) {
+            return;
+        }
+        current.descendants().forEach(ProcessHandle::destroy);
+        current.destroy();
+        try {
+            if (current.waitFor(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        current.descendants().forEach(ProcessHandle::destroyForcibly);
+        current.destroyForcibly();
+    }
+
+    /**
+     * 记录一次退出，返回运行了多久(毫秒)。代号不匹配说明进程是被主动停止或已被替换，返回 -1
+     */
+    synchronized long exited(long launchedGeneration, int exitCode) {
+        if (launchedGeneration != generation) {
+            return -1;
+        }
+        lastExitCode = exitCode;
+        state = State.EXITED;
+        long now = System.currentTimeMillis();
+        recentExits.addLast(now);
+        return now - startedAt;
+    }
+
+    /**
+     * 最近 windowMillis 内的退出次数
+     */
+    synchronized int exitsWithin(long windowMillis) {
+        long since = System.currentTimeMillis() - windowMillis;
+        while (!recentExits.isEmpty() && recentExits.peekFirst() < since) {
+            recentExits.removeFirst();
+        }
+        return recentExits.size();
+    }
+
+    /**
+     * 按连续快速退出次数计算下一次重启的延迟并进入等待重启状态
+     *
+     * @param stable 上次运行是否超过稳定时长，是则退避从头开始
+     */
+    synchronized long scheduleRestart(boolean stable, long initialMillis, long maxMillis) {
+        quickExits = stable ? 1 : quickExits + 1;
+        long delay = initialMillis << Math.min(quickExits - 1, 20);
+        delay = Math.min(delay, maxMillis);
+        state = State.BACKOFF;
+        restartAt = System.currentTimeMillis() + delay;
+        restarts++;
+        return delay;
+    }
+
+    /**
+     * 采样进程树的资源占用，只由 ScriptRunner 的调度线程调用。未运行时清空上次的采样
+     */
+    ProcessSampler.TreeUsage sample() {
+        Process current;
+        synchronized (this) {
+            current = state == State.RUNNING ? process : null;
+        }
+        usage = current != null ? sampler.sample(current.toHandle()) : null;
+        return usage;
+    }
+
+    /**
+     * 就绪检查通过，代号不匹配(进程已被替换)时返回 false
+     */
+    synchronized boolean markReady(long launchedGeneration) {
+        if (launchedGeneration != generation || state != State.RUNNING) {
+            return false;
+        }
+        ready = true;
+        readyAfterMillis = System.currentTimeMillis() - startedAt;
+        return true;
+    }
+
+    /**
+     * 就绪或存活检查失败后进程已被结束，按一次退出记录，返回运行了多久(毫秒)
+     */
+    synchronized long failed() {
+        state = State.EXITED;
+        long now = System.currentTimeMillis();
+        recentExits.addLast(now);
+        return now - startedAt;
+    }
+
+    boolean logMatched() {
+        return logMatched;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 记录本次采样是否超过软限制，返回连续超限的采样次数
+     */
+    synchronized int overLimit(boolean exceeded) {
+        samplesOverLimit = exceeded ? samplesOverLimit + 1 : 0;
+        return samplesOverLimit;
+    }
+
+    /**
+     * 因超过资源限制被重启，计入重启次数但不计入崩溃记录
+     */
+    synchronized void countRestart() {
+        restarts++;
+    }
+
+    synchronized void markCrashLoop() {
+        state = State.CRASH_LOOP;
+        restartAt = 0;
+    }
+
+    /**
+     * 手动重启时清除崩溃记录
+     */
+    synchronized void resetHistory() {
+        recentExits.clear();
+        quickExits = 0;
+    }
+
+    synchronized boolean isAwaitingRestart(long launchedGeneration) {
+        return state == State.BACKOFF && launchedGeneration == generation;
+    }
+
+    public int id() {
+        return id;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    public synchronized State state() {
+        return state;
+    }
+
+    public synchronized boolean isAlive() {
+        return process != null && process.isAlive() && state == State.RUNNING;
+    }
+
+    /**
+     * 进程在运行且已通过就绪检查
+     */
+    public synchronized boolean isReady() {
+        return ready && isAlive();
+    }
+
+    /**
+     * 从启动到通过就绪检查用了多久(毫秒)
+     */
+    public synchronized long readyAfterMillis() {
+        return readyAfterMillis;
+    }
+
+    /**
+     * 进程号，未运行时返回 -1
+     */
+    public synchronized long pid() {
+        return process != null && process.isAlive() ? process.pid() : -1;
+    }
+
+    /**
+     * 最近一次资源采样，未运行或尚未采样时返回 null
+     */
+    public ProcessSampler.TreeUsage usage() {
+        return usage;
+    }
+
+    /**
+     * 正在由反向代理转发给这个进程的请求数
+     */
+    AtomicInteger outstanding() {
+        return outstanding;
+    }
+
+    public synchronized int restarts() {
+        return restarts;
+    }
+
+    public synchronized Integer lastExitCode() {
+        return lastExitCode;
+    }
+
+    /**
+     * 一行状态描述，供 status 命令显示
+     */
+    public synchronized String describe() {
+        long now = System.currentTimeMillis();
+        StringBuilder sb = new StringBuilder();
+        sb.append("#").append(id).append(" 端口 ").append(port).append(" - ").append(state.label());
+        if (state == State.RUNNING) {
+            sb.append(ready ? "" : "，未就绪");
+            sb.append(" (pid ").append(process.pid())
+                    .append(", 已运行 ").append(formatDuration(now - startedAt)).append(")");
+        } else if (state == State.BACKOFF) {
+            sb.append(String.format(" (%.1fs 后)", Math.max(0, restartAt - now) / 1000.0));
+        }
+        if (restarts > 0) {
+            sb.append(", 已重启 ").append(restarts).append(" 次");
+        }
+        if (lastExitCode != null) {
+            sb.append(", 上次退出码 ").append(lastExitCode);
+        }
+        if (outstanding.get() > 0) {
+            sb.append(", 代理中请求 ").append(outstanding.get());
+        }
+        ProcessSampler.TreeUsage current = usage;
+        if (state == State.RUNNING && current != null) {
+            sb.append("\n      ").append(current);
+            if (current.processes().size() > 1) {
+                for (ProcessSampler.Usage process : current.processes()) {
+                    sb.append("\n        ").append(process);
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        if (seconds < 60) {
+            return seconds + "s";
+        } else if (seconds < 3600) {
+            return seconds / 60 + "m" + seconds % 60 + "s";
+        }
+        return seconds / 3600 + "h" + seconds % 3600 / 60 + "m";
+    }
+}
\ No newline at end of file
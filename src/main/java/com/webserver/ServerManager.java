@@ -1,13 +1,34 @@
 package com.webserver;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
+import java.util.Set;
 import java.io.*;
 
 public class ServerManager {
+    /** 需要重新绑定监听才能生效的配置 */
+    private static final Set<String> WEB_KEYS = Set.of("web_port", "web_executor", "web_pool_size", "web_pool_queue",
+            "metrics_enabled", "metrics_path", "events_enabled", "events_path", "web_backlog", "web_max_in_flight",
+            "web_queue_size", "web_queue_timeout_ms", "web_latency_target_ms");
+    /** 决定工作进程数量、端口和 WORKER_* 环境变量的配置，以及只在启动脚本时读取的配置 */
+    private static final Set<String> SCRIPT_KEYS = Set.of("script_workers", "script_base_port", "script_ready_check",
+            "script_sample_seconds");
+    /** 只在程序启动时读取的配置 */
+    private static final Set<String> STARTUP_KEYS = Set.of("web_vt_carriers", "static_cache_mb",
+            "static_cache_max_file_kb", "static_cache_revalidate_ms", "compression_enabled", "compression_min_bytes",
+            "access_log_enabled", "access_log_file", "access_log_format", "access_log_max_mb", "access_log_backups",
+            "access_log_buffer", "events_max_clients", "events_queue", "script_log_buffer_kb", "script_log_path",
+            "script_log_max_followers", "config_watch", "config_reload_debounce_ms", "proxy_enabled", "proxy_path",
+            "proxy_connect_timeout_ms", "web_tcp_nodelay");
+
     private final ConfigManager configManager;
     private final WebServer webServer;
     private final ScriptRunner scriptRunner;
     private final WebStatusMonitor webMonitor;
+    private final ReverseProxy proxy;
     private boolean running = true;
 
     public ServerManager() {
@@ -16,9 +37,40 @@ public class ServerManager {
 
         configManager = new ConfigManager();
         int port = configManager.getWebPort();
-        webServer = new WebServer(port);
-        scriptRunner = new ScriptRunner();
+        webServer = new WebServer(port, configManager);
+        scriptRunner = new ScriptRunner(configManager, webServer.getEvents());
         webMonitor = new WebStatusMonitor(configManager, webServer);
+        webServer.addContext(configManager.getScriptLogPath(), new WebServer.LogsHandler(scriptRunner.getLog(),
+                webServer.supportsStreaming(), configManager.getScriptLogMaxFollowers()), WebServer.Admission.NONE);
+        webServer.addStopListener(scriptRunner.getLog()::disconnectAll);
+        proxy = configManager.isProxyEnabled() ? new ReverseProxy(scriptRunner, configManager) : null;
+        if (proxy != null) {
+            // 后端慢不应该压低静态文件的并发上限
+            webServer.addContext(configManager.getProxyPath(), proxy, WebServer.Admission.UNSAMPLED);
+        }
+        scriptRunner.registerMetrics(webServer.getMetrics());
+        configManager.addChangeListener(this::applyConfig);
+    }
+
+    /**
+     * 配置变化后应用新值：监听相关的配置平滑重启Web服务器(先绑定新端口再关闭旧端口)，
+     * 监控配置重启监控，工作进程的数量和端口变化时重启脚本。其余配置每次使用时读取，自动生效
+     */
+    private void applyConfig(Set<String> keys) {
+        if (keys.stream().anyMatch(WEB_KEYS::contains) && webServer.isRunning()) {
+            webServer.restart();
+        }
+        boolean monitorChanged = keys.stream().anyMatch(key -> key.startsWith("monitor_"))
+                // 未配置监控目标时监控的是本机端口
+                || keys.contains("web_port") && configManager.getMonitorWebStatus().isEmpty();
+        if (monitorChanged && webMonitor.isMonitoring()) {
+            webMonitor.restartMonitoring();
+        }
+        if (keys.stream().anyMatch(SCRIPT_KEYS::contains) && scriptRunner.isRunning()) {
+            scriptRunner.restart();
+        }
+        keys.stream().filter(STARTUP_KEYS::contains).forEach(key ->
+                System.out.println("ℹ " + key + " 需要重启程序后生效"));
     }
 
     /**
@@ -61,18 +113,46 @@ public class ServerManager {
 
     public void start() {
         printBanner();
+        configManager.startWatching();
 
         webServer.start();
 
-        if (configManager.isStartRunEnabled()) {
-            scriptRunner.start();
-        }
+        boolean scriptStarted = configManager.isStartRunEnabled() && scriptRunner.start();
 
-        webMonitor.startMonitoring();
+        if (scriptStarted) {
+            startMonitorWhenReady();
+        } else {
+            webMonitor.startMonitoring();
+        }
 
         startCommandListener();
     }
 
+    /**
+     * 配置了就绪检查时，等工作进程就绪(或超时)后再启动监控，避免冷启动期间的探测失败和告警；
+     * 等待在后台进行，不阻塞命令行
+     */
+    private void startMonitorWhenReady() {
+        if (!scriptRunner.hasReadyCheck()) {
+            webMonitor.startMonitoring();
+            return;
+        }
+        int timeoutSeconds = configManager.getScriptReadyTimeoutSeconds();
+        System.out.println("ℹ 等待脚本就绪后再启动Web状态监控 (最多 " + timeoutSeconds + " 秒)");
+        Thread.ofVirtual().name("monitor-ready-gate").start(() -> {
+            try {
+                int ready = scriptRunner.awaitReady(timeoutSeconds * 1000L);
+                int total = scriptRunner.getWorkers().size();
+                if (ready < total) {
+                    System.out.println("⚠ " + timeoutSeconds + " 秒内只有 " + ready + "/" + total + " 个工作进程就绪，仍然启动监控");
+                }
+                webMonitor.startMonitoring();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
     private void printBanner() {
         int port = configManager.getWebPort();
         String localIp = webServer.getLocalIpAddress();
@@ -130,6 +210,12 @@ public class ServerManager {
                     case "info":
                         showNetworkInfo();
                         break;
+                    case "metrics":
+                        showMetrics();
+                        break;
+                    case "bench":
+                        runBenchmark(argument);
+                        break;
                     case "exit":
                     case "quit":
                         shutdown();
@@ -150,16 +236,19 @@ public class ServerManager {
         System.out.println("可用命令:");
         System.out.println("  restart                    - 重启Web服务器和脚本");
         System.out.println("  restart web               - 仅重启Web服务器");
-        System.out.println("  restart run               - 仅重启脚本");
+        System.out.println("  restart run [编号]        - 仅重启脚本，指定编号时只重启该工作进程");
         System.out.println("  restart monitor           - 仅重启Web状态监控");
         System.out.println("  status                    - 显示当前状态");
         System.out.println("  config show               - 显示当前配置");
-        System.out.println("  config set <key> <value>  - 修改配置项");
-        System.out.println("  monitor status            - 显示监控状态");
+        System.out.println("  config set <key> <value> [...] - 修改配置项，可一次设置多项");
+        System.out.println("  monitor status            - 显示各监控目标的成功率和延迟分位数");
         System.out.println("  monitor restart           - 重启监控");
         System.out.println("  monitor stop              - 停止监控");
         System.out.println("  monitor start             - 启动监控");
+        System.out.println("  monitor history [范围] [粒度] - 显示监控历史汇总，默认最近24h、每1h");
         System.out.println("  info                      - 显示网络信息");
+        System.out.println("  metrics                   - 显示各路由请求数和延迟分位数");
+        System.out.println("  bench [url] [并发] [时长] [速率] - 压测，默认本机Web服务器、16并发、10秒、闭环");
         System.out.println("  help                      - 显示此帮助信息");
         System.out.println("  exit/quit                 - 退出程序");
     }
@@ -178,12 +267,17 @@ public class ServerManager {
     }
 
     private void handleRestartWithArgument(String argument) {
-        switch (argument.toLowerCase()) {
+        String[] parts = argument.trim().split("\\s+");
+        switch (parts[0].toLowerCase()) {
             case "web":
                 restartWeb();
                 break;
             case "run":
-                restartRun();
+                if (parts.length > 1) {
+                    restartWorker(parts[1]);
+                } else {
+                    restartRun();
+                }
                 break;
             case "monitor":
                 restartMonitor();
@@ -198,7 +292,7 @@ public class ServerManager {
         if (argument.isEmpty()) {
             System.out.println("config 命令用法:");
             System.out.println("  config show               - 显示当前配置");
-            System.out.println("  config set <key> <value>  - 修改配置项");
+            System.out.println("  config set <key> <value> [...] - 修改配置项，可一次设置多项");
             return;
         }
 
@@ -210,14 +304,12 @@ public class ServerManager {
                 showConfig();
                 break;
             case "set":
-                if (parts.length > 1) {
-                    String[] keyValue = parts[1].split(" ", 2);
-                    if (keyValue.length == 2) {
-                        setConfig(keyValue[0], keyValue[1]);
-                    } else {
-                        System.out.println("配置设置格式错误");
-                        System.out.println("正确格式: config set <key> <value>");
-                    }
+                String[] tokens = parts.length > 1 ? parts[1].trim().split("\\s+") : new String[0];
+                if (tokens.length >= 2 && tokens.length % 2 == 0) {
+                    setConfig(tokens);
+                } else {
+                    System.out.println("配置设置格式错误");
+                    System.out.println("正确格式: config set <key> <value> [<key> <value> ...]");
                 }
                 break;
             default:
@@ -232,12 +324,17 @@ public class ServerManager {
             System.out.println("  monitor restart  - 重启监控");
             System.out.println("  monitor stop     - 停止监控");
             System.out.println("  monitor start    - 启动监控");
+            System.out.println("  monitor history [范围] [粒度] - 显示历史汇总，默认 24h 1h");
             return;
         }
 
-        switch (argument.toLowerCase()) {
+        String[] parts = argument.trim().split("\\s+");
+        switch (parts[0].toLowerCase()) {
             case "status":
                 System.out.println("Web状态监控: " + (webMonitor.isMonitoring() ? "运行中" : "已停止"));
+                if (webMonitor.isMonitoring()) {
+                    System.out.print(webMonitor.describeTargets());
+                }
                 break;
             case "restart":
                 restartMonitor();
@@ -248,11 +345,41 @@ public class ServerManager {
             case "start":
                 webMonitor.startMonitoring();
                 break;
+            case "history":
+                showMonitorHistory(parts);
+                break;
             default:
                 System.out.println("未知的monitor子命令: " + argument);
         }
     }
 
+    private void showMonitorHistory(String[] parts) {
+        String rangeText = parts.length > 1 ? parts[1] : "24h";
+        String bucketText = parts.length > 2 ? parts[2] : "1h";
+        long range;
+        long bucket;
+        try {
+            range = MonitorTarget.parseMillis(rangeText);
+            bucket = MonitorTarget.parseMillis(bucketText);
+        } catch (IllegalArgumentException e) {
+            System.out.println("✗ " + e.getMessage());
+            System.out.println("正确格式: monitor history [范围] [粒度]，例如 monitor history 7d 1h");
+            return;
+        }
+        if (range <= 0 || bucket <= 0 || bucket > range) {
+            System.out.println("✗ 范围和粒度必须大于0，且粒度不能大于范围");
+            return;
+        }
+        System.out.println("=== 监控历史 (最近 " + rangeText + ", 每 " + bucketText + ") ===");
+        try {
+            System.out.print(webMonitor.describeHistory(range, bucket));
+        } catch (IOException e) {
+            System.err.println("✗ 读取监控历史失败: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.out.println("✗ " + e.getMessage());
+        }
+    }
+
     private void showConfig() {
         System.out.println("=== 当前配置 ===");
         System.out.println("web_port: " + configManager.getWebPort());
@@ -262,49 +389,155 @@ public class ServerManager {
             monitorUrl = webServer.getLocalIpAddress() + ":" + webServer.getPort();
         }
         System.out.println("monitor_web_status: " + monitorUrl);
+        System.out.println("script_workers: " + configManager.getScriptWorkers());
+        System.out.println("script_base_port: " + configManager.getScriptBasePort());
+        System.out.println("script_restart: " + configManager.getScriptRestart());
+        System.out.println("script_backoff_initial_ms: " + configManager.getScriptBackoffInitialMillis());
+        System.out.println("script_backoff_max_seconds: " + configManager.getScriptBackoffMaxSeconds());
+        System.out.println("script_stable_seconds: " + configManager.getScriptStableSeconds());
+        System.out.println("script_crash_loop_restarts: " + configManager.getScriptCrashLoopRestarts());
+        System.out.println("script_crash_loop_window_seconds: " + configManager.getScriptCrashLoopWindowSeconds());
+        System.out.println("script_log_buffer_kb: " + configManager.getScriptLogBufferKilobytes());
+        System.out.println("script_log_echo_lines: " + configManager.getScriptLogEchoLines());
+        System.out.println("script_log_path: " + configManager.getScriptLogPath());
+        System.out.println("script_log_max_followers: " + configManager.getScriptLogMaxFollowers());
+        System.out.println("script_sample_seconds: " + configManager.getScriptSampleSeconds());
+        int rssLimit = configManager.getScriptRssLimitMegabytes();
+        System.out.println("script_rss_limit_mb: " + (rssLimit > 0 ? rssLimit : "未设置"));
+        int cpuLimit = configManager.getScriptCpuLimitPercent();
+        System.out.println("script_cpu_limit_percent: " + (cpuLimit > 0 ? cpuLimit : "未设置"));
+        System.out.println("script_limit_samples: " + configManager.getScriptLimitSamples());
+        System.out.println("script_limit_action: " + configManager.getScriptLimitAction());
+        HealthCheck readyCheck = configManager.getScriptReadyCheck();
+        System.out.println("script_ready_check: " + (readyCheck != null ? readyCheck : "未设置"));
+        System.out.println("script_ready_timeout_seconds: " + configManager.getScriptReadyTimeoutSeconds());
+        System.out.println("script_live_interval_seconds: " + configManager.getScriptLiveIntervalSeconds());
+        System.out.println("script_live_failures: " + configManager.getScriptLiveFailures());
+        System.out.println("script_check_timeout_ms: " + configManager.getScriptCheckTimeoutMillis());
+        System.out.println("monitor_interval_seconds: " + configManager.getMonitorIntervalSeconds());
+        System.out.println("monitor_timeout_seconds: " + configManager.getMonitorTimeoutSeconds());
+        System.out.println("monitor_recheck_ms: " + configManager.getMonitorRecheckMillis());
+        System.out.println("monitor_confirm_checks: " + configManager.getMonitorConfirmChecks());
+        System.out.println("monitor_backoff_max_seconds: " + configManager.getMonitorBackoffMaxSeconds());
+        System.out.println("monitor_jitter_percent: " + configManager.getMonitorJitterPercent());
+        System.out.println("monitor_probe_budget: " + configManager.getMonitorProbeBudget());
+        System.out.println("monitor_history_enabled: " + configManager.isMonitorHistoryEnabled());
+        System.out.println("monitor_history_dir: " + configManager.getMonitorHistoryDir());
+        System.out.println("monitor_history_raw_days: " + configManager.getMonitorHistoryRawDays());
+        System.out.println("monitor_history_days: " + configManager.getMonitorHistoryDays());
+        System.out.println("web_executor: " + configManager.getWebExecutor());
+        System.out.println("web_vt_carriers: " + configManager.getWebVirtualCarriers());
+        System.out.println("web_pool_size: " + configManager.getWebPoolSize());
+        System.out.println("web_pool_queue: " + configManager.getWebPoolQueue());
+        System.out.println("web_drain_seconds: " + configManager.getWebDrainSeconds());
+        int backlog = configManager.getWebBacklog();
+        System.out.println("web_backlog: " + (backlog > 0 ? backlog : "系统默认"));
+        System.out.println("web_max_in_flight: " + configManager.getWebMaxInFlight());
+        System.out.println("web_queue_size: " + configManager.getWebQueueSize());
+        System.out.println("web_queue_timeout_ms: " + configManager.getWebQueueTimeoutMillis());
+        int latencyTarget = configManager.getWebLatencyTargetMillis();
+        System.out.println("web_latency_target_ms: " + (latencyTarget > 0 ? latencyTarget : "未启用"));
+        System.out.println("web_tcp_nodelay: " + configManager.isWebTcpNoDelay());
+        System.out.println("static_cache_mb: " + configManager.getStaticCacheMegabytes());
+        System.out.println("static_cache_max_file_kb: " + configManager.getStaticCacheMaxFileKilobytes());
+        System.out.println("static_cache_revalidate_ms: " + configManager.getStaticCacheRevalidateMillis());
+        System.out.println("access_log_enabled: " + configManager.isAccessLogEnabled());
+        System.out.println("access_log_file: " + configManager.getAccessLogFile());
+        System.out.println("access_log_format: " + configManager.getAccessLogFormat());
+        System.out.println("access_log_max_mb: " + configManager.getAccessLogMaxMegabytes());
+        System.out.println("access_log_backups: " + configManager.getAccessLogBackups());
+        System.out.println("access_log_buffer: " + configManager.getAccessLogBuffer());
+        System.out.println("metrics_enabled: " + configManager.isMetricsEnabled());
+        System.out.println("metrics_path: " + configManager.getMetricsPath());
+        System.out.println("events_enabled: " + configManager.isEventsEnabled());
+        System.out.println("events_path: " + configManager.getEventsPath());
+        System.out.println("events_max_clients: " + configManager.getEventsMaxClients());
+        System.out.println("events_queue: " + configManager.getEventsQueue());
+        System.out.println("upload_max_mb: " + configManager.getUploadMaxBytes() / (1024 * 1024));
+        int compressionMinBytes = configManager.getCompressionMinBytes();
+        System.out.println("compression_min_bytes: " + (compressionMinBytes > 0 ? compressionMinBytes : "已禁用"));
+        System.out.println("proxy_enabled: " + configManager.isProxyEnabled());
+        System.out.println("proxy_path: " + configManager.getProxyPath());
+        System.out.println("proxy_connect_timeout_ms: " + configManager.getProxyConnectTimeoutMillis());
+        System.out.println("proxy_timeout_seconds: " + configManager.getProxyTimeoutSeconds());
+        System.out.println("config_watch: " + configManager.isConfigWatchEnabled());
+        System.out.println("config_reload_debounce_ms: " + configManager.getConfigReloadDebounceMillis());
+    }
+
+    /**
+     * 校验全部键值对后在一个事务中提交，任何一项无效时都不保存
+     */
+    private void setConfig(String[] keyValues) {
+        ConfigManager.Transaction transaction = configManager.begin();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            if (!stageConfig(transaction, keyValues[i], keyValues[i + 1])) {
+                System.out.println("ℹ 配置未修改");
+                return;
+            }
+        }
+        // 写入失败时 commit 自己会报错，只有成功后才确认
+        if (!transaction.commit()) {
+            return;
+        }
+        for (int i = 0; i < keyValues.length; i += 2) {
+            System.out.println("已设置" + keyValues[i].toLowerCase() + "为: " + keyValues[i + 1]);
+        }
     }
 
-    private void setConfig(String key, String value) {
+    private boolean stageConfig(ConfigManager.Transaction transaction, String key, String value) {
         switch (key.toLowerCase()) {
             case "web_port":
                 try {
                     int port = Integer.parseInt(value);
                     if (port < 1 || port > 65535) {
                         System.out.println("端口号必须在1-65535之间");
-                        return;
+                        return false;
                     }
-                    configManager.setWebPort(port);
-                    System.out.println("已设置web_port为: " + port);
-                    System.out.println("需要重启Web服务器使新端口生效");
+                    transaction.setWebPort(port);
+                    return true;
                 } catch (NumberFormatException e) {
                     System.out.println("端口号必须是数字");
+                    return false;
                 }
-                break;
             case "enable_start_run":
                 if ("true".equalsIgnoreCase(value) || "false".equalsIgnoreCase(value)) {
-                    boolean enabled = Boolean.parseBoolean(value);
-                    configManager.setStartRunEnabled(enabled);
-                    System.out.println("已设置enable_start_run为: " + enabled);
-                } else {
-                    System.out.println("enable_start_run必须是 true 或 false");
+                    transaction.setStartRunEnabled(Boolean.parseBoolean(value));
+                    return true;
                 }
-                break;
+                System.out.println("enable_start_run必须是 true 或 false");
+                return false;
             case "monitor_web_status":
-                configManager.setMonitorWebStatus(value);
-                System.out.println("已设置monitor_web_status为: " + value);
-                System.out.println("需要重启监控使新配置生效");
-                break;
+                // 逐个校验目标，格式错误时不保存
+                try {
+                    for (String spec : value.split(",")) {
+                        if (!spec.trim().isEmpty()) {
+                            MonitorTarget.parse(spec, 1000, 1000);
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    System.out.println("✗ 监控目标格式错误: " + e.getMessage());
+                    System.out.println("格式: url[|interval=5s][|timeout=5s]，多个目标用逗号分隔");
+                    return false;
+                }
+                transaction.setMonitorWebStatus(value);
+                return true;
             default:
                 System.out.println("未知的配置项: " + key);
                 System.out.println("可用配置项: web_port, enable_start_run, monitor_web_status");
+                return false;
         }
     }
 
     private void restartAll() {
         System.out.println("正在重启Web服务器和脚本...");
         restartWeb();
+        webMonitor.stopMonitoring();
         restartRun();
-        restartMonitor();
+        if (scriptRunner.isRunning()) {
+            startMonitorWhenReady();
+        } else {
+            webMonitor.startMonitoring();
+        }
     }
 
     private void restartWeb() {
@@ -315,27 +548,143 @@ public class ServerManager {
         scriptRunner.restart();
     }
 
+    private void restartWorker(String idText) {
+        int id;
+        try {
+            id = Integer.parseInt(idText);
+        } catch (NumberFormatException e) {
+            System.out.println("工作进程编号必须是数字");
+            return;
+        }
+        if (!scriptRunner.isRunning()) {
+            System.out.println("ℹ 脚本未运行，使用 'restart run' 启动全部工作进程");
+        } else if (!scriptRunner.restartWorker(id)) {
+            System.out.println("✗ 没有编号为 " + id + " 的工作进程 (共 " + scriptRunner.getWorkers().size() + " 个)");
+        }
+    }
+
     private void restartMonitor() {
         webMonitor.restartMonitoring();
     }
 
+    private void showMetrics() {
+        Map<String, MetricsRegistry.RouteMetrics> routes = webServer.getMetrics().routes();
+        System.out.println("=== 请求指标 (自启动以来) ===");
+        if (routes.isEmpty()) {
+            System.out.println("暂无请求");
+            return;
+        }
+        System.out.println(String.format("%-12s %10s %8s %10s %10s %10s %10s %12s",
+                "路由", "请求数", "错误", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)", "发送(MB)"));
+        for (MetricsRegistry.RouteMetrics route : routes.values()) {
+            LatencyHistogram.Snapshot latency = route.latency();
+            System.out.println(String.format("%-12s %10d %8d %10.2f %10.2f %10.2f %10.2f %12.2f",
+                    route.route(), latency.count(), route.errors(),
+                    latency.percentile(0.50) / 1000.0, latency.percentile(0.95) / 1000.0,
+                    latency.percentile(0.99) / 1000.0, latency.max() / 1000.0,
+                    route.bytesSent() / (1024.0 * 1024.0)));
+        }
+        if (configManager.isMetricsEnabled() && webServer.isRunning()) {
+            System.out.println("Prometheus: http://localhost:" + webServer.getPort() + configManager.getMetricsPath());
+        }
+    }
+
+    /**
+     * bench [url] [concurrency] [duration] [rate]，url 可省略，速率为0或省略时为闭环模式
+     */
+    private void runBenchmark(String argument) {
+        String[] args = argument.trim().isEmpty() ? new String[0] : argument.trim().split("\\s+");
+        int index = 0;
+        String url = "http://127.0.0.1:" + webServer.getPort() + "/";
+        if (args.length > 0 && args[0].contains("://")) {
+            url = args[index++];
+        }
+        int concurrency;
+        Duration duration;
+        double rate;
+        URI target;
+        try {
+            concurrency = args.length > index ? Integer.parseInt(args[index++]) : 16;
+            duration = args.length > index ? LoadGenerator.parseDuration(args[index++]) : Duration.ofSeconds(10);
+            rate = args.length > index ? Double.parseDouble(args[index++]) : 0;
+            target = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            System.out.println("用法: bench [url] [并发数] [时长,如 10s/2m] [每秒请求数,省略为闭环]");
+            return;
+        }
+        if (concurrency <= 0 || duration.isZero() || duration.isNegative() || rate < 0) {
+            System.out.println("✗ 并发数和时长必须大于0，速率不能为负");
+            return;
+        }
+        if (url.startsWith("http://127.0.0.1:" + webServer.getPort()) && !webServer.isRunning()) {
+            System.out.println("⚠ 本机Web服务器未运行");
+        }
+
+        System.out.println("🔄 正在压测 " + target + " (" + concurrency + " 并发, "
+                + duration.toSeconds() + " 秒" + (rate > 0 ? ", " + rate + " req/s" : "") + ")...");
+        System.out.println(new LoadGenerator(target, concurrency, duration, rate).run());
+    }
+
     private void showStatus() {
         System.out.println("当前状态:");
-        System.out.println("  Web服务器: " + (webServer.isRunning() ? "运行中 (端口 " + webServer.getPort() + ")" : "已停止"));
-        System.out.println("  脚本运行: " + (scriptRunner.isRunning() ? "运行中" : "已停止"));
+        System.out.println("  Web服务器: " + (webServer.isRunning() ? "运行中 (端口 " + webServer.getPort()
+                + ", 进行中请求 " + webServer.getInFlightRequests() + ")" : "已停止"));
+        AdmissionController admission = webServer.getAdmission();
+        System.out.println("  准入控制: 并发上限 " + admission.getLimit() + "/" + admission.getMaxLimit()
+                + ", 处理中 " + admission.getInFlight() + ", 排队 " + admission.getWaiting()
+                + ", 已拒绝 " + admission.getShed() + " (队列满 " + admission.getRejectedQueueFull()
+                + ", 等待超时 " + admission.getRejectedTimeout() + ")");
+        if (scriptRunner.isRunning()) {
+            List<ScriptWorker> workers = scriptRunner.getWorkers();
+            System.out.println("  脚本运行: 运行中 (" + scriptRunner.getAliveCount() + "/" + workers.size() + " 个工作进程"
+                    + (scriptRunner.hasReadyCheck() ? ", " + scriptRunner.getReadyCount() + " 个就绪" : "") + ")");
+            for (ScriptWorker worker : workers) {
+                System.out.println("    " + worker.describe());
+            }
+        } else {
+            System.out.println("  脚本运行: 已停止");
+        }
+        LogRing scriptLog = scriptRunner.getLog();
+        System.out.println("  脚本输出: http://localhost:" + webServer.getPort() + configManager.getScriptLogPath()
+                + "?lines=100&follow=1 (缓冲 " + scriptLog.capacity() / 1024 + " KB, 已写入 "
+                + String.format("%.2f", scriptLog.end() / (1024.0 * 1024.0)) + " MB)");
+        if (proxy != null) {
+            System.out.println("  反向代理: http://localhost:" + webServer.getPort() + configManager.getProxyPath()
+                    + " -> 脚本工作进程 (已转发 " + proxy.getForwarded() + ", 失败 " + proxy.getFailed() + ")");
+        }
         System.out.println("  Web监控: " + (webMonitor.isMonitoring() ? "运行中" : "已停止"));
         System.out.println("  自动运行: " + (configManager.isStartRunEnabled() ? "启用" : "禁用"));
-
-        String monitorTarget = configManager.getMonitorWebStatus();
-        if (monitorTarget.isEmpty()) {
-            monitorTarget = webServer.getLocalIpAddress() + ":" + webServer.getPort();
+        AccessLog accessLog = webServer.getAccessLog();
+        if (accessLog != null) {
+            System.out.println("  访问日志: " + accessLog.getFile() + " (已写入 " + accessLog.getWritten()
+                    + " 条, 丢弃 " + accessLog.getDropped() + " 条)");
+        }
+        EventHub events = webServer.getEvents();
+        System.out.println("  实时事件: " + events.getSubscriberCount() + " 个订阅者 (已发布 " + events.getPublished()
+                + " 条, 因积压断开 " + events.getDroppedSubscribers() + " 个)");
+        StaticFileCache fileCache = webServer.getFileCache();
+        System.out.println("  静态缓存: " + fileCache.size() + " 个文件, "
+                + String.format("%.2f", fileCache.bytes() / (1024.0 * 1024.0)) + " MB");
+
+        List<MonitorTarget> monitorTargets = webMonitor.getTargets();
+        if (monitorTargets.isEmpty()) {
+            String monitorTarget = configManager.getMonitorWebStatus();
+            if (monitorTarget.isEmpty()) {
+                monitorTarget = webServer.getLocalIpAddress() + ":" + webServer.getPort();
+            }
+            System.out.println("  监控目标: " + monitorTarget);
+        } else {
+            System.out.println("  监控目标: " + monitorTargets.size() + " 个");
+            for (MonitorTarget target : monitorTargets) {
+                System.out.println("    - " + target);
+            }
         }
-        System.out.println("  监控目标: " + monitorTarget);
     }
 
     private void shutdown() {
         System.out.println("正在关闭服务器...");
         running = false;
+        configManager.stopWatching();
         webServer.stop();
         scriptRunner.stop();
         webMonitor.stopMonitoring();
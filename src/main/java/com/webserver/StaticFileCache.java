@@ -0,0 +1,380 @@
+package com.webserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 静态文件内容缓存：按路径缓存文件字节、MIME类型、强ETag和修改时间，按总字节数做LRU淘汰。
+ * 命中的条目在重新校验间隔内直接返回，超过间隔后只做一次stat，文件变化时重新加载。
+ * 可压缩的文件在加载时一次性生成 gzip/deflate 变体，请求路径上只做协商不做压缩。
+ */
+public class StaticFileCache {
+    private final long maxBytes;
+    private final long maxFileBytes;
+    private final long revalidateMillis;
+    private final Function<String, String> mimeTypeResolver;
+    private final int compressionMinBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long currentBytes = 0;
+
+    /**
+     * @param compressionMinBytes 小于该大小的文件不生成压缩变体，0表示禁用压缩
+     */
+    public StaticFileCache(long maxBytes, long maxFileBytes, long revalidateMillis,
+                           Function<String, String> mimeTypeResolver, int compressionMinBytes) {
+        this.maxBytes = maxBytes;
+        this.maxFileBytes = Math.min(maxFileBytes, maxBytes);
+        this.revalidateMillis = revalidateMillis;
+        this.mimeTypeResolver = mimeTypeResolver;
+        this.compressionMinBytes = compressionMinBytes;
+    }
+
+    /**
+     * 查找文件，不存在或是目录时返回null。超过单文件上限的文件返回不带内容的条目，由调用方从磁盘流式发送。
+     */
+    public Entry get(String filename) throws IOException {
+        long now = System.currentTimeMillis();
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(filename);
+        }
+        if (cached != null && now - cached.validatedAt < revalidateMillis) {
+            return cached;
+        }
+
+        Path path = Paths.get(filename);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            invalidate(filename);
+            return null;
+        }
+        if (attributes.isDirectory()) {
+            invalidate(filename);
+            return null;
+        }
+
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (cached != null && cached.lastModified == lastModified && cached.size == attributes.size()) {
+            cached.validatedAt = now;
+            return cached;
+        }
+
+        String mimeType = mimeTypeResolver.apply(filename);
+        if (attributes.size() > maxFileBytes) {
+            invalidate(filename);
+            String etag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(attributes.size()) + "\"";
+            Variant identity = new Variant(null, attributes.size(), null, etag);
+            return new Entry(path, identity, null, null, mimeType, lastModified, now);
+        }
+
+        byte[] content = Files.readAllBytes(path);
+        String etag = strongETag(content);
+        Variant identity = new Variant(content, content.length, null, etag);
+        Variant gzip = null;
+        Variant deflate = null;
+        if (compressionMinBytes > 0 && content.length >= compressionMinBytes && isCompressible(mimeType)) {
+            gzip = compress(content, "gzip", etag);
+            deflate = compress(content, "deflate", etag);
+        }
+        Entry entry = new Entry(path, identity, gzip, deflate, mimeType, lastModified, now);
+        synchronized (this) {
+            Entry previous = entries.put(filename, entry);
+            if (previous != null) {
+                currentBytes -= previous.cost();
+            }
+            currentBytes += entry.cost();
+            evict();
+        }
+        return entry;
+    }
+
+    public synchronized void invalidate(String filename) {
+        Entry removed = entries.remove(filename);
+        if (removed != null) {
+            currentBytes -= removed.cost();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        currentBytes = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long bytes() {
+        return currentBytes;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            currentBytes -= iterator.next().getValue().cost();
+            iterator.remove();
+        }
+    }
+
+    private static boolean isCompressible(String mimeType) {
+        return mimeType.startsWith("text/")
+                || mimeType.equals("application/javascript")
+                || mimeType.equals("application/json")
+                || mimeType.equals("image/svg+xml");
+    }
+
+    /**
+     * 生成压缩变体，压缩后不比原文件小时返回null
+     */
+    private static Variant compress(byte[] content, String encoding, String etag) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length / 3 + 64);
+        try (DeflaterOutputStream out = encoding.equals("gzip")
+                ? new GZIPOutputStream(buffer) : new DeflaterOutputStream(buffer)) {
+            out.write(content);
+        }
+        if (buffer.size() >= content.length) {
+            return null;
+        }
+        byte[] compressed = buffer.toByteArray();
+        String variantETag = etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+        return new Variant(compressed, compressed.length, encoding, variantETag);
+    }
+
+    private static String strongETag(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            StringBuilder sb = new StringBuilder(34).append('"');
+            for (int i = 0; i < 16; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 不可用", e);
+        }
+    }
+
+    public static class Entry {
+        private final Path path;
+        private final Variant identity;
+        private final Variant gzip;
+        private final Variant deflate;
+        private final long size;
+        private final String mimeType;
+        private final long lastModified;
+        private final String lastModifiedHeader;
+        private volatile long validatedAt;
+
+        Entry(Path path, Variant identity, Variant gzip, Variant deflate,
+              String mimeType, long lastModified, long validatedAt) {
+            this.path = path;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.deflate = deflate;
+            this.size = identity.length;
+            this.mimeType = mimeType;
+            this.lastModified = lastModified;
+            this.lastModifiedHeader = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+                    ZonedDateTime.ofInstant(Instant.ofEpochMilli(lastModified), ZoneOffset.UTC));
+            this.validatedAt = validatedAt;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        public String mimeType() {
+            return mimeType;
+        }
+
+        public String lastModifiedHeader() {
+            return lastModifiedHeader;
+        }
+
+        public Variant identity() {
+            return identity;
+        }
+
+        /**
+         * 是否存在压缩变体，存在时响应需要带 Vary: Accept-Encoding
+         */
+        public boolean hasEncodings() {
+            return gzip != null || deflate != null;
+        }
+
+        /**
+         * 按 Accept-Encoding 的q值选择变体，q值相同时优先 gzip
+         */
+        public Variant select(String acceptEncoding) {
+            if (acceptEncoding == null || !hasEncodings()) {
+                return identity;
+            }
+            double gzipQ = gzip != null ? qualityOf(acceptEncoding, "gzip") : 0;
+            double deflateQ = deflate != null ? qualityOf(acceptEncoding, "deflate") : 0;
+            if (gzipQ > 0 && gzipQ >= deflateQ) {
+                return gzip;
+            }
+            if (deflateQ > 0) {
+                return deflate;
+            }
+            return identity;
+        }
+
+        /**
+         * 根据 If-None-Match / If-Modified-Since 判断客户端缓存的该变体是否仍然有效
+         */
+        public boolean notModified(Variant variant, String ifNoneMatch, String ifModifiedSince) {
+            if (ifNoneMatch != null) {
+                return matchesETag(ifNoneMatch, variant.etag);
+            }
+            if (ifModifiedSince != null) {
+                try {
+                    long since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                            .toInstant().getEpochSecond();
+                    return lastModified / 1000 <= since;
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * If-Range 校验：强ETag或最后修改时间与当前版本一致时才允许返回区间
+         */
+        public boolean ifRangeMatches(String ifRange) {
+            if (ifRange == null) {
+                return true;
+            }
+            ifRange = ifRange.trim();
+            if (ifRange.startsWith("W/")) {
+                return false;
+            }
+            if (ifRange.startsWith("\"")) {
+                return ifRange.equals(identity.etag);
+            }
+            try {
+                long date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant().getEpochSecond();
+                return lastModified / 1000 == date;
+            } catch (DateTimeParseException e) {
+                return false;
+            }
+        }
+
+        private long cost() {
+            return size + (gzip != null ? gzip.length : 0) + (deflate != null ? deflate.length : 0);
+        }
+    }
+
+    /**
+     * 同一文件版本的一种内容编码表示
+     */
+    public static class Variant {
+        private final byte[] content;
+        private final long length;
+        private final String encoding;
+        private final String etag;
+
+        Variant(byte[] content, long length, String encoding, String etag) {
+            this.content = content;
+            this.length = length;
+            this.encoding = encoding;
+            this.etag = etag;
+        }
+
+        /**
+         * 变体内容，未缓存的大文件返回null
+         */
+        public byte[] content() {
+            return content;
+        }
+
+        public long length() {
+            return length;
+        }
+
+        /**
+         * Content-Encoding 取值，原始内容返回null
+         */
+        public String encoding() {
+            return encoding;
+        }
+
+        public String etag() {
+            return etag;
+        }
+    }
+
+    /**
+     * 解析 Accept-Encoding 中某个编码的q值，未列出时按 "*" 处理
+     */
+    static double qualityOf(String acceptEncoding, String coding) {
+        double wildcard = 0;
+        for (String item : acceptEncoding.split(",")) {
+            String[] params = item.split(";");
+            String name = params[0].trim();
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(coding)) {
+                return q;
+            }
+            if (name.equals("*")) {
+                wildcard = q;
+            }
+        }
+        return wildcard;
+    }
+
+    /**
+     * If-None-Match 使用弱比较：忽略 W/ 前缀，"*" 匹配任意实体
+     */
+    static boolean matchesETag(String header, String etag) {
+        for (String candidate : header.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.equals("*")) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
\ No newline at end of file
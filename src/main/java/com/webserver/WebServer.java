@@ -1,21 +1,83 @@
 package com.webserver;
 
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
 import java.io.*;
+import java.net.BindException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 public class WebServer {
-    private HttpServer server;
-    private final int port;
-    private boolean isRunning = false;
+    /** 仪表盘页面从这里读取可配置的接口路径，路径本身固定 */
+    static final String DASHBOARD_PATH = "/dashboard.json";
+
+    private volatile Listener listener;
+    private volatile int port;
+    private final ConfigManager configManager;
+    private final StaticFileCache fileCache;
+    private final AccessLog accessLog;
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final EventHub events;
+    private final Map<String, HttpHandler> extraContexts = new LinkedHashMap<>();
+    private final Map<String, Admission> contextAdmission = new HashMap<>();
+    private final AdmissionController admission;
+    private final List<Runnable> stopListeners = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService eventTicker;
+    private volatile boolean isRunning = false;
+    private boolean gaugesRegistered = false;
     private String localIpAddress = "127.0.0.1";
 
-    public WebServer(int port) {
+    public WebServer(int port, ConfigManager configManager) {
         this.port = port;
+        this.configManager = configManager;
+        this.fileCache = new StaticFileCache(
+                configManager.getStaticCacheMegabytes() * 1024L * 1024L,
+                configManager.getStaticCacheMaxFileKilobytes() * 1024L,
+                configManager.getStaticCacheRevalidateMillis(),
+                FileHandler::getMimeType,
+                configManager.getCompressionMinBytes());
+        this.accessLog = configManager.isAccessLogEnabled()
+                ? new AccessLog(configManager.getAccessLogFile(), configManager.getAccessLogFormat(),
+                        configManager.getAccessLogBuffer(),
+                        configManager.getAccessLogMaxMegabytes() * 1024L * 1024L,
+                        configManager.getAccessLogBackups())
+                : null;
+        this.events = new EventHub(maxEventSubscribers(), configManager.getEventsQueue());
+        this.admission = new AdmissionController(admissionLimit(), configManager.getWebQueueSize(),
+                admissionQueueTimeoutMillis(), configManager.getWebLatencyTargetMillis());
+        configureNoDelay();
 
         try {
             this.localIpAddress = InetAddress.getLocalHost().getHostAddress();
@@ -24,7 +86,7 @@ public class WebServer {
         }
     }
 
-    public boolean start() {
+    public synchronized boolean start() {
         try {
             if (isRunning) {
                 System.out.println("ℹ Web服务器已在运行中");
@@ -37,16 +99,14 @@ public class WebServer {
                 return false;
             }
 
-            server = HttpServer.create(new InetSocketAddress(port), 0);
-            server.createContext("/", new FileHandler());
-            server.createContext("/upload", new UploadHandler(this)); // 传递WebServer实例
-            server.setExecutor(null);
-            server.start();
-
+            if (accessLog != null) {
+                accessLog.start();
+            }
+            registerGauges();
+            listener = bind(port);
             isRunning = true;
-            System.out.println("✓ Web服务器已启动: http://" + localIpAddress + ":" + port);
-            System.out.println("✓ 同时也可以通过: http://localhost:" + port + " 访问");
-            System.out.println("✓ 文件上传功能已启用: http://" + localIpAddress + ":" + port + "/upload");
+            startEventTicker();
+            printAddresses();
             return true;
 
         } catch (IOException e) {
@@ -55,18 +115,413 @@ public class WebServer {
         }
     }
 
-    public void stop() {
-        if (server != null && isRunning) {
-            server.stop(0);
+    /**
+     * 停止接收新连接，等待进行中的请求在截止时间内完成后再关闭
+     */
+    public synchronized void stop() {
+        if (listener != null && isRunning) {
+            Listener old = listener;
+            listener = null;
             isRunning = false;
-            System.out.println("✓ Web服务器已停止");
+            stopEventTicker();
+            events.disconnectAll();
+            notifyStopListeners();
+            DrainResult result = drain(old, beginStop(old));
+            if (accessLog != null) {
+                accessLog.flush(1000);
+            }
+            System.out.println("✓ Web服务器已停止" + result);
         }
     }
 
-    public void restart() {
+    /**
+     * 平滑重启：端口变化时先绑定新端口再排空旧监听；端口不变时旧监听关闭后立即重新绑定，
+     * 进行中的请求都在旧监听上完成。
+     */
+    public synchronized void restart() {
         System.out.println("🔄 正在重启Web服务器...");
-        stop();
-        start();
+        if (!isRunning) {
+            start();
+            return;
+        }
+
+        Listener old = listener;
+        int newPort = configManager.getWebPort();
+        try {
+            Listener fresh;
+            Thread stopper;
+            // 事件流是长连接，先断开让浏览器重连到新监听，否则旧监听要等满排空截止时间
+            events.disconnectAll();
+            notifyStopListeners();
+            if (newPort != old.port) {
+                fresh = bind(newPort);
+                stopper = beginStop(old);
+            } else {
+                stopper = beginStop(old);
+                fresh = bindWithRetry(newPort);
+            }
+            listener = fresh;
+            port = newPort;
+            printAddresses();
+            DrainResult result = drain(old, stopper);
+            System.out.println("✓ 旧监听已关闭 (端口 " + old.port + ")" + result);
+        } catch (IOException e) {
+            System.err.println("✗ 重启Web服务器失败: " + e.getMessage());
+            if (newPort != old.port && listener == old) {
+                System.err.println("ℹ 继续使用原端口 " + old.port);
+            } else {
+                listener = null;
+                isRunning = false;
+            }
+        }
+    }
+
+    private Listener bind(int bindPort) throws IOException {
+        admission.configure(admissionLimit(), configManager.getWebQueueSize(),
+                admissionQueueTimeoutMillis(), configManager.getWebLatencyTargetMillis());
+        // backlog 为0时使用系统默认值
+        HttpServer server = HttpServer.create(new InetSocketAddress(bindPort), configManager.getWebBacklog());
+        Listener created = new Listener(server, createExecutor(), bindPort);
+        List<Filter> filters = filtersFor(created, Admission.SAMPLED);
+        // 过载时也要能看指标，事件流是长连接，都不经过准入控制
+        List<Filter> unadmitted = filtersFor(created, Admission.NONE);
+        server.createContext("/", new FileHandler(fileCache)).getFilters().addAll(filters);
+        server.createContext("/upload", new UploadHandler(this)).getFilters().addAll(filters); // 传递WebServer实例
+        if (configManager.isMetricsEnabled()) {
+            server.createContext(configManager.getMetricsPath(), new MetricsHandler(metrics)).getFilters().addAll(unadmitted);
+        }
+        if (eventsAvailable()) {
+            server.createContext(configManager.getEventsPath(), new EventsHandler(events)).getFilters().addAll(unadmitted);
+        }
+        server.createContext(DASHBOARD_PATH, new DashboardHandler(this::dashboardJson)).getFilters().addAll(unadmitted);
+        for (Map.Entry<String, HttpHandler> context : extraContexts.entrySet()) {
+            server.createContext(context.getKey(), context.getValue()).getFilters()
+                    .addAll(filtersFor(created, contextAdmission.get(context.getKey())));
+        }
+        server.setExecutor(created.executor);
+        server.start();
+        return created;
+    }
+
+    /**
+     * 准入过滤器放在计时之后，被拒绝的请求同样记入指标和访问日志
+     */
+    private List<Filter> filtersFor(Listener owner, Admission mode) {
+        if (mode == Admission.NONE) {
+            return List.of(new InFlightFilter(owner), new InstrumentationFilter(metrics, accessLog));
+        }
+        return List.of(new InFlightFilter(owner), new InstrumentationFilter(metrics, accessLog),
+                new AdmissionFilter(admission, mode == Admission.SAMPLED));
+    }
+
+    /**
+     * 注册额外的上下文，之后每次绑定监听都会创建；服务器运行中时立即在当前监听上生效
+     */
+    public void addContext(String path, HttpHandler handler) {
+        addContext(path, handler, Admission.SAMPLED);
+    }
+
+    public synchronized void addContext(String path, HttpHandler handler, Admission mode) {
+        extraContexts.put(path, handler);
+        contextAdmission.put(path, mode);
+        if (listener != null) {
+            listener.server.createContext(path, handler).getFilters().addAll(filtersFor(listener, mode));
+        }
+    }
+
+    /**
+     * 线程池模式下同时处理的请求数不可能超过线程数，上限超过线程数时准入控制永远不会生效
+     */
+    private int admissionLimit() {
+        int limit = configManager.getWebMaxInFlight();
+        if ("pool".equals(configManager.getWebExecutor())) {
+            limit = Math.min(limit, configManager.getWebPoolSize());
+        }
+        return limit;
+    }
+
+    /**
+     * 只有虚拟线程模式在准入队列中等待。单调度线程模式下等待会占住唯一的调度线程；
+     * 线程池模式下等待会占住池线程，排队由线程池自己的队列完成，队列满时由 OverflowPolicy 拒绝
+     */
+    private long admissionQueueTimeoutMillis() {
+        return "virtual".equals(configManager.getWebExecutor()) ? configManager.getWebQueueTimeoutMillis() : 0;
+    }
+
+    /**
+     * HttpServer 默认不设置 TCP_NODELAY，小响应会被 Nagle 算法和客户端的延迟确认一起拖住约 40ms。
+     * 该属性在 HttpServer 首次创建时读取，所以在绑定前设置(用户显式指定的JVM参数优先)
+     */
+    private void configureNoDelay() {
+        String property = "sun.net.httpserver.nodelay";
+        if (System.getProperty(property) == null && configManager.isWebTcpNoDelay()) {
+            System.setProperty(property, "true");
+        }
+    }
+
+    /**
+     * 停止或重启前回调，用于断开自己注册的长连接，避免它们拖住排空
+     */
+    public void addStopListener(Runnable stopListener) {
+        stopListeners.add(stopListener);
+    }
+
+    private void notifyStopListeners() {
+        for (Runnable stopListener : stopListeners) {
+            stopListener.run();
+        }
+    }
+
+    /**
+     * 单调度线程模式下长连接会占住唯一的调度线程，不提供流式接口
+     */
+    public boolean supportsStreaming() {
+        return !"dispatcher".equals(configManager.getWebExecutor());
+    }
+
+    /**
+     * 同端口重启时旧监听的socket在后台关闭，这里短暂重试直到端口释放
+     */
+    private Listener bindWithRetry(int bindPort) throws IOException {
+        long giveUpAt = System.currentTimeMillis() + 2000;
+        while (true) {
+            try {
+                return bind(bindPort);
+            } catch (BindException e) {
+                if (System.currentTimeMillis() > giveUpAt) {
+                    throw e;
+                }
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 在后台线程里调用 HttpServer.stop：它会立即关闭监听socket，然后最多等待排空截止时间。
+     * JDK 在没有进行中请求时也会等满整个截止时间，所以是否排空完成以我们自己的计数为准。
+     */
+    private Thread beginStop(Listener old) {
+        int deadlineSeconds = old.inFlight.get() == 0 ? 0 : configManager.getWebDrainSeconds();
+        return Thread.ofPlatform().daemon().name("web-drain-" + old.port).start(() -> {
+            old.server.stop(deadlineSeconds);
+            if (old.executor != null) {
+                old.executor.shutdownNow();
+            }
+        });
+    }
+
+    private DrainResult drain(Listener old, Thread stopper) {
+        int active = old.inFlight.get();
+        long completedBefore = old.completed.get();
+        long failedBefore = old.failed.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(configManager.getWebDrainSeconds());
+        try {
+            while (old.inFlight.get() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            if (old.inFlight.get() > 0) {
+                // 截止时间已到，HttpServer 会强制关闭剩余连接，再给处理线程一点时间感知连接断开
+                stopper.join(1000);
+                long settle = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+                while (old.inFlight.get() > 0 && System.nanoTime() < settle) {
+                    Thread.sleep(10);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long aborted = old.failed.get() - failedBefore + old.inFlight.get();
+        return new DrainResult(active, old.completed.get() - completedBefore, aborted);
+    }
+
+    /**
+     * 每个事件流连接在整个连接期间占用一个请求线程，单调度线程模式下不提供事件流
+     */
+    private boolean eventsAvailable() {
+        return configManager.isEventsEnabled() && supportsStreaming();
+    }
+
+    /**
+     * 仪表盘需要的接口路径，未提供事件流时 eventsPath 为 null
+     */
+    private String dashboardJson() {
+        return new EventHub.Json()
+                .put("eventsPath", eventsAvailable() ? configManager.getEventsPath() : null)
+                .toString();
+    }
+
+    /**
+     * 平台线程池模式下事件流最多占用一半的线程
+     */
+    private int maxEventSubscribers() {
+        int max = configManager.getEventsMaxClients();
+        if ("pool".equals(configManager.getWebExecutor())) {
+            max = Math.min(max, Math.max(1, configManager.getWebPoolSize() / 2));
+        }
+        return max;
+    }
+
+    /**
+     * 每秒向事件流发布一次Web服务器状态和请求速率
+     */
+    private void startEventTicker() {
+        if (!eventsAvailable()) {
+            return;
+        }
+        eventTicker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "web-event-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+        long[] previous = new long[4];
+        previous[3] = System.nanoTime();
+        eventTicker.scheduleAtFixedRate(() -> {
+            long requests = 0;
+            long errors = 0;
+            long bytes = 0;
+            for (MetricsRegistry.RouteMetrics route : metrics.routes().values()) {
+                requests += route.requests();
+                errors += route.errors();
+                bytes += route.bytesSent();
+            }
+            long now = System.nanoTime();
+            double seconds = (now - previous[3]) / 1e9;
+            events.publish("web", "web", new EventHub.Json()
+                    .put("running", isRunning)
+                    .put("port", port)
+                    .put("inFlight", getInFlightRequests())
+                    .put("requestsPerSecond", (requests - previous[0]) / seconds)
+                    .put("errorsPerSecond", (errors - previous[1]) / seconds)
+                    .put("bytesPerSecond", (bytes - previous[2]) / seconds)
+                    .put("requestsTotal", requests)
+                    .put("subscribers", events.getSubscriberCount())
+                    .toString());
+            previous[0] = requests;
+            previous[1] = errors;
+            previous[2] = bytes;
+            previous[3] = now;
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    private void stopEventTicker() {
+        if (eventTicker != null) {
+            eventTicker.shutdownNow();
+            eventTicker = null;
+        }
+    }
+
+    /**
+     * 首次启动时注册，不放在构造函数里：方法引用会在构造完成前泄露 this
+     */
+    private void registerGauges() {
+        if (gaugesRegistered) {
+            return;
+        }
+        gaugesRegistered = true;
+        metrics.registerGauge("webserver_in_flight_requests", "Requests currently being handled.",
+                this::getInFlightRequests);
+        metrics.registerGauge("webserver_static_cache_bytes", "Bytes held by the static file cache.",
+                fileCache::bytes);
+        metrics.registerGauge("webserver_static_cache_files", "Files held by the static file cache.",
+                fileCache::size);
+        if (accessLog != null) {
+            metrics.registerCounter("webserver_access_log_written_total", "Access log records written.",
+                    accessLog::getWritten);
+            metrics.registerCounter("webserver_access_log_dropped_total", "Access log records dropped because the buffer was full.",
+                    accessLog::getDropped);
+        }
+        metrics.registerGauge("webserver_admission_limit", "Current concurrency limit for admitted requests.",
+                admission::getLimit);
+        metrics.registerGauge("webserver_admission_waiting", "Requests waiting in the admission queue.",
+                admission::getWaiting);
+        metrics.registerCounter("webserver_shed_requests_total", "Requests rejected with 503 by admission control.",
+                admission::getShed);
+        metrics.registerGauge("webserver_event_subscribers", "Connected event stream clients.",
+                events::getSubscriberCount);
+        metrics.registerCounter("webserver_event_subscribers_dropped_total", "Event stream clients disconnected because their queue was full.",
+                events::getDroppedSubscribers);
+    }
+
+    private void printAddresses() {
+        System.out.println("✓ Web服务器已启动: http://" + localIpAddress + ":" + port);
+        System.out.println("✓ 请求执行模式: " + describeExecutor());
+        System.out.println("✓ 同时也可以通过: http://localhost:" + port + " 访问");
+        System.out.println("✓ 文件上传功能已启用: http://" + localIpAddress + ":" + port + "/upload");
+        if (configManager.isMetricsEnabled()) {
+            System.out.println("✓ 指标接口: http://" + localIpAddress + ":" + port + configManager.getMetricsPath());
+        }
+        if (eventsAvailable()) {
+            System.out.println("✓ 实时事件流: http://" + localIpAddress + ":" + port + configManager.getEventsPath());
+        } else if (configManager.isEventsEnabled()) {
+            System.out.println("⚠ 单调度线程模式下不提供实时事件流");
+        }
+    }
+
+    /**
+     * 按配置创建请求执行器，返回null时由HttpServer的调度线程直接处理请求
+     */
+    private ExecutorService createExecutor() {
+        switch (configManager.getWebExecutor()) {
+            case "pool":
+                return newPool(configManager.getWebPoolSize(), configManager.getWebPoolQueue());
+            case "dispatcher":
+                return null;
+            default:
+                configureVirtualThreadCarriers();
+                return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("web-vt-", 0).factory());
+        }
+    }
+
+    /**
+     * 固定大小的平台线程池。队列满时不能让调度线程自己执行(会卡住所有连接的接收和分发)，
+     * 交给 OverflowPolicy 快速返回 503
+     */
+    static ExecutorService newPool(int poolSize, int queueSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        OverflowPolicy overflow = new OverflowPolicy();
+        return new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                r -> {
+                    Thread t = new Thread(r, "web-worker-" + threadCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                overflow) {
+            @Override
+            protected void terminated() {
+                overflow.shutdown();
+            }
+        };
+    }
+
+    /**
+     * JDK 21 中 HttpServer 的请求/响应流方法是 synchronized 的，虚拟线程阻塞在慢客户端的
+     * socket 读写上时会钉住载体线程。默认载体数等于CPU核数，几个慢下载就能让其他请求全部排队，
+     * 因此在首个虚拟线程创建前按配置放大载体线程池（用户显式指定的JVM参数优先）。
+     */
+    private void configureVirtualThreadCarriers() {
+        String property = "jdk.virtualThreadScheduler.parallelism";
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, String.valueOf(configManager.getWebVirtualCarriers()));
+        }
+    }
+
+    private String describeExecutor() {
+        switch (configManager.getWebExecutor()) {
+            case "pool":
+                return "平台线程池 (" + configManager.getWebPoolSize() + " 线程, 队列 "
+                        + configManager.getWebPoolQueue() + ")";
+            case "dispatcher":
+                return "单调度线程";
+            default:
+                return "虚拟线程 (每请求一个, 载体线程 "
+                        + System.getProperty("jdk.virtualThreadScheduler.parallelism") + ")";
+        }
     }
 
     public boolean isRunning() {
@@ -77,37 +532,770 @@ public class WebServer {
         return port;
     }
 
+    /**
+     * 当前监听上进行中的请求数
+     */
+    public int getInFlightRequests() {
+        Listener current = listener;
+        return current != null ? current.inFlight.get() : 0;
+    }
+
     public String getLocalIpAddress() {
         return localIpAddress;
     }
 
+    /**
+     * 原子发布新内容：先把临时文件刷到磁盘，再用 ATOMIC_MOVE 替换目标文件并让缓存失效。
+     * 已经打开旧文件或持有旧缓存内容的响应继续发送旧版本，之后的请求看到新版本，不需要重启。
+     * 临时文件必须与目标文件在同一个文件系统上，替换前继承目标文件的权限。
+     */
+    public void publish(Path source, String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Path target = Paths.get(filename);
+        FilePermissions.inherit(source, target);
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            System.err.println("⚠ 文件系统不支持原子替换，改用普通替换: " + filename);
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        fileCache.invalidate(filename);
+    }
+
+    /**
+     * 访问日志，未启用时返回null
+     */
+    public AccessLog getAccessLog() {
+        return accessLog;
+    }
+
+    public AdmissionController getAdmission() {
+        return admission;
+    }
+
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 推送给浏览器的实时事件，未启用事件流时发布的事件没有订阅者
+     */
+    public EventHub getEvents() {
+        return events;
+    }
+
+    public StaticFileCache getFileCache() {
+        return fileCache;
+    }
+
+    /**
+     * 一个监听端口及其执行器和在途请求计数，重启时新旧两代并存直到旧的排空
+     */
+    private static class Listener {
+        private final HttpServer server;
+        private final ExecutorService executor;
+        private final int port;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong completed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        Listener(HttpServer server, ExecutorService executor, int port) {
+            this.server = server;
+            this.executor = executor;
+            this.port = port;
+        }
+    }
+
+    /**
+     * 线程池队列满时的拒绝策略：请求改在几个专用的平台线程上执行并标记为溢出，只解析请求头后由
+     * AdmissionFilter 立即回 503，不占用池线程也不阻塞调度线程。
+     * 不用虚拟线程：HttpServer 在 synchronized 代码里读请求头，慢客户端会钉住载体线程，
+     * 而线程池模式不会放大载体线程数，几个慢连接就能卡住所有 503。
+     * 溢出线程和队列也满时抛出 RejectedExecutionException，HttpServer 会直接关闭该连接。
+     * 不经过准入控制的接口(指标、事件流)照常处理，事件流的连接数有自己的上限。
+     */
+    static class OverflowPolicy implements RejectedExecutionHandler {
+        private static final int THREADS = 4;
+        private static final int QUEUE = 256;
+        private static final ThreadLocal<Boolean> OVERFLOW = new ThreadLocal<>();
+
+        private final ThreadPoolExecutor rejecter;
+
+        OverflowPolicy() {
+            AtomicInteger threadCount = new AtomicInteger();
+            rejecter = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(QUEUE),
+                    r -> {
+                        Thread t = new Thread(() -> {
+                            OVERFLOW.set(Boolean.TRUE);
+                            r.run();
+                        }, "web-overflow-" + threadCount.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    },
+                    new ThreadPoolExecutor.AbortPolicy());
+            rejecter.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("线程池已关闭");
+            }
+            rejecter.execute(task);
+        }
+
+        void shutdown() {
+            rejecter.shutdownNow();
+        }
+
+        /**
+         * 当前线程是否在处理被线程池拒绝的请求
+         */
+        static boolean isOverflow() {
+            return OVERFLOW.get() != null;
+        }
+    }
+
+    /**
+     * 上下文如何经过准入控制
+     */
+    public enum Admission {
+        /** 不经过准入控制，长连接接口和过载时也要可用的接口 */
+        NONE,
+        /** 占用名额，但耗时不作为自适应上限的延迟样本，例如转发到后端的请求，慢的是后端而不是本服务器 */
+        UNSAMPLED,
+        /** 占用名额，GET/HEAD 到发出响应头为止的耗时参与自适应上限 */
+        SAMPLED
+    }
+
+    /**
+     * 准入控制，拿不到名额的请求立即返回 503 和 Retry-After
+     */
+    static class AdmissionFilter extends Filter {
+        private final AdmissionController admission;
+        private final boolean sampled;
+
+        AdmissionFilter(AdmissionController admission, boolean sampled) {
+            this.admission = admission;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            boolean admitted;
+            try {
+                if (OverflowPolicy.isOverflow()) {
+                    admission.recordOverflow();
+                    admitted = false;
+                } else {
+                    admitted = admission.acquire();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                admitted = false;
+            }
+            if (!admitted) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(503, -1);
+                exchange.close();
+                return;
+            }
+            // 只有 GET/HEAD 作为延迟样本，上传的耗时取决于请求体大小
+            String method = exchange.getRequestMethod();
+            boolean sample = sampled && ("GET".equals(method) || "HEAD".equals(method));
+            FirstByteTimer responseBody = null;
+            if (sample) {
+                responseBody = new FirstByteTimer(exchange.getResponseBody());
+                exchange.setStreams(null, responseBody);
+            }
+            long startNanos = System.nanoTime();
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                admission.release(sample ? responseBody.firstByteNanos(System.nanoTime()) - startNanos : -1);
+            }
+        }
+
+        @Override
+        public String description() {
+            return "准入控制";
+        }
+    }
+
+    /**
+     * 记录响应体第一次写入的时间，即响应头发出的时间。延迟样本只算到首字节：
+     * 大文件下载和读得慢的客户端的传输时间与服务器自身的负载无关，不应拉低准入上限
+     */
+    private static class FirstByteTimer extends FilterOutputStream {
+        private long firstByteNanos;
+        private boolean written;
+
+        FirstByteTimer(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            mark();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            mark();
+            out.write(b, off, len);
+        }
+
+        private void mark() {
+            if (!written) {
+                written = true;
+                firstByteNanos = System.nanoTime();
+            }
+        }
+
+        /**
+         * 没有响应体(HEAD、304、错误状态)时以处理结束的时间为准
+         */
+        long firstByteNanos(long endNanos) {
+            return written ? firstByteNanos : endNanos;
+        }
+    }
+
+    private static class InFlightFilter extends Filter {
+        private final Listener owner;
+
+        InFlightFilter(Listener owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            owner.inFlight.incrementAndGet();
+            try {
+                chain.doFilter(exchange);
+                owner.completed.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                owner.failed.incrementAndGet();
+                throw e;
+            } finally {
+                owner.inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public String description() {
+            return "统计进行中的请求";
+        }
+    }
+
+    /**
+     * 请求计时和收发字节计数，结束后同时记入按路由的指标和异步访问日志（未启用时为null）
+     */
+    private static class InstrumentationFilter extends Filter {
+        private final MetricsRegistry metrics;
+        private final AccessLog accessLog;
+
+        InstrumentationFilter(MetricsRegistry metrics, AccessLog accessLog) {
+            this.metrics = metrics;
+            this.accessLog = accessLog;
+        }
+
+        @Override
+        public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+            long startNanos = System.nanoTime();
+            CountingInputStream requestBody = new CountingInputStream(exchange.getRequestBody());
+            CountingOutputStream responseBody = new CountingOutputStream(exchange.getResponseBody());
+            exchange.setStreams(requestBody, responseBody);
+            try {
+                chain.doFilter(exchange);
+            } finally {
+                long durationMicros = (System.nanoTime() - startNanos) / 1000;
+                int status = Math.max(exchange.getResponseCode(), 0);
+                metrics.route(exchange.getHttpContext().getPath())
+                        .record(status, durationMicros, responseBody.getCount(), requestBody.getCount());
+                if (accessLog != null) {
+                    Headers requestHeaders = exchange.getRequestHeaders();
+                    accessLog.log(System.currentTimeMillis(),
+                            exchange.getRemoteAddress().getAddress().getHostAddress(),
+                            exchange.getRequestMethod(),
+                            exchange.getRequestURI().toString(),
+                            exchange.getProtocol(),
+                            status,
+                            responseBody.getCount(),
+                            durationMicros,
+                            requestHeaders.getFirst("Referer"),
+                            requestHeaders.getFirst("User-Agent"));
+                }
+            }
+        }
+
+        @Override
+        public String description() {
+            return "请求指标和访问日志";
+        }
+    }
+
+    /**
+     * 以 Prometheus 文本格式输出指标
+     */
+    static class MetricsHandler implements HttpHandler {
+        private final MetricsRegistry metrics;
+
+        MetricsHandler(MetricsRegistry metrics) {
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = metrics.toPrometheus().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(200, -1);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * 返回仪表盘配置JSON，内容在每次请求时生成，配置重新加载后立即反映
+     */
+    static class DashboardHandler implements HttpHandler {
+        private final Supplier<String> json;
+
+        DashboardHandler(Supplier<String> json) {
+            this.json = json;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                byte[] body = json.get().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(body);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    /**
+     * Server-Sent Events 长连接：先发送快照，之后逐条转发增量事件，空闲时定期发送注释行探测连接是否断开
+     */
+    static class EventsHandler implements HttpHandler {
+        private static final long HEARTBEAT_MILLIS = 15_000;
+        private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] RETRY = "retry: 3000\n\n".getBytes(StandardCharsets.UTF_8);
+
+        private final EventHub events;
+
+        EventsHandler(EventHub events) {
+            this.events = events;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                EventHub.Subscriber subscriber = events.subscribe();
+                if (subscriber == null) {
+                    exchange.getResponseHeaders().set("Retry-After", "5");
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                try {
+                    Headers headers = exchange.getResponseHeaders();
+                    headers.set("Content-Type", "text/event-stream; charset=utf-8");
+                    headers.set("Cache-Control", "no-cache");
+                    headers.set("X-Accel-Buffering", "no");
+                    exchange.sendResponseHeaders(200, 0);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(RETRY);
+                    os.flush();
+                    stream(subscriber, os);
+                } catch (IOException e) {
+                    // 浏览器关闭页面或网络断开，属于正常结束
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    events.unsubscribe(subscriber);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void stream(EventHub.Subscriber subscriber, OutputStream os) throws IOException, InterruptedException {
+            while (true) {
+                byte[] frame = subscriber.next(HEARTBEAT_MILLIS);
+                if (frame == null) {
+                    os.write(HEARTBEAT);
+                } else {
+                    // 已经排队的事件合并成一次 flush
+                    do {
+                        if (frame == EventHub.CLOSE) {
+                            return;
+                        }
+                        os.write(frame);
+                    } while ((frame = subscriber.poll()) != null);
+                }
+                os.flush();
+            }
+        }
+    }
+
+    /**
+     * 脚本输出: GET ?lines=N 返回最后N行，&follow=1 发送完之后继续推送新输出，&worker=N 只看一个工作进程
+     */
+    static class LogsHandler implements HttpHandler {
+        private static final int DEFAULT_LINES = 100;
+        private static final int MAX_LINES = 100_000;
+        private static final long HEARTBEAT_MILLIS = 15_000;
+
+        private final LogRing log;
+        private final boolean streaming;
+        private final int maxFollowers;
+        private final AtomicInteger followers = new AtomicInteger();
+
+        LogsHandler(LogRing log, boolean streaming, int maxFollowers) {
+            this.log = log;
+            this.streaming = streaming;
+            this.maxFollowers = maxFollowers;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            try {
+                if (!"GET".equals(exchange.getRequestMethod())) {
+                    exchange.getResponseHeaders().set("Allow", "GET");
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                int lines;
+                byte[] workerPrefix;
+                try {
+                    lines = Math.min(Integer.parseInt(query.getOrDefault("lines", String.valueOf(DEFAULT_LINES))), MAX_LINES);
+                    workerPrefix = query.containsKey("worker")
+                            ? ("[脚本#" + Integer.parseInt(query.get("worker")) + "] ").getBytes(StandardCharsets.UTF_8)
+                            : null;
+                } catch (NumberFormatException e) {
+                    sendText(exchange, 400, "lines 和 worker 必须是数字\n");
+                    return;
+                }
+                boolean follow = "1".equals(query.get("follow")) || "true".equals(query.get("follow"));
+                if (follow && !streaming) {
+                    sendText(exchange, 501, "单调度线程模式下不支持 follow\n");
+                    return;
+                }
+                if (follow && followers.incrementAndGet() > maxFollowers) {
+                    followers.decrementAndGet();
+                    exchange.getResponseHeaders().set("Retry-After", "5");
+                    exchange.sendResponseHeaders(503, -1);
+                    return;
+                }
+                try {
+                    Headers headers = exchange.getResponseHeaders();
+                    headers.set("Content-Type", "text/plain; charset=utf-8");
+                    headers.set("Cache-Control", "no-cache");
+                    headers.set("X-Accel-Buffering", "no");
+                    exchange.sendResponseHeaders(200, 0);
+                    OutputStream os = exchange.getResponseBody();
+                    long epoch = log.epoch();
+                    long cursor = copy(log.tail(Math.max(lines, 0), workerPrefix), workerPrefix, os);
+                    os.flush();
+                    if (follow) {
+                        follow(cursor, epoch, workerPrefix, os);
+                    }
+                    os.close();
+                } catch (IOException e) {
+                    // 客户端断开，属于正常结束
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    if (follow) {
+                        followers.decrementAndGet();
+                    }
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void follow(long cursor, long epoch, byte[] workerPrefix, OutputStream os)
+                throws IOException, InterruptedException {
+            while (log.epoch() == epoch) {
+                if (!log.await(cursor, HEARTBEAT_MILLIS, epoch)) {
+                    if (log.epoch() != epoch) {
+                        return;
+                    }
+                    // 空行探测连接是否已断开
+                    os.write('\n');
+                } else {
+                    long aligned = log.align(cursor);
+                    if (aligned > cursor) {
+                        os.write(("... 跳过 " + (aligned - cursor) + " 字节 (读取太慢，已被覆盖) ...\n")
+                                .getBytes(StandardCharsets.UTF_8));
+                    }
+                    cursor = copy(aligned, workerPrefix, os);
+                }
+                os.flush();
+            }
+        }
+
+        /**
+         * 从 from 开始把完整的行写出，返回读到的位置
+         */
+        private long copy(long from, byte[] workerPrefix, OutputStream os) throws IOException {
+            byte[] chunk = new byte[64 * 1024];
+            long cursor = log.align(from);
+            int n;
+            while ((n = log.read(cursor, chunk)) > 0) {
+                int lineStart = 0;
+                for (int i = 0; i < n; i++) {
+                    if (chunk[i] == '\n') {
+                        if (workerPrefix == null || startsWith(chunk, lineStart, workerPrefix)) {
+                            os.write(chunk, lineStart, i + 1 - lineStart);
+                        }
+                        lineStart = i + 1;
+                    }
+                }
+                if (lineStart == 0) {
+                    break;
+                }
+                cursor += lineStart;
+            }
+            return cursor;
+        }
+
+        private static boolean startsWith(byte[] bytes, int offset, byte[] prefix) {
+            if (offset + prefix.length > bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (bytes[offset + i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+            byte[] body = text.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }
+    }
+
+    static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+            String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+            query.putIfAbsent(name, value);
+        }
+        return query;
+    }
+
+    private static class DrainResult {
+        private final int active;
+        private final long completed;
+        private final long aborted;
+
+        DrainResult(int active, long completed, long aborted) {
+            this.active = active;
+            this.completed = completed;
+            this.aborted = aborted;
+        }
+
+        @Override
+        public String toString() {
+            if (active == 0 && completed == 0 && aborted == 0) {
+                return "";
+            }
+            return " (停止时进行中 " + active + " 个, 排空完成 " + completed + " 个, 中止 " + aborted + " 个)";
+        }
+    }
+
     static class FileHandler implements HttpHandler {
+        private final StaticFileCache cache;
+
+        FileHandler(StaticFileCache cache) {
+            this.cache = cache;
+        }
+
         @Override
         public void handle(HttpExchange exchange) throws IOException {
             String requestPath = exchange.getRequestURI().getPath();
             String filename = requestPath.equals("/") ? "index.html" : requestPath.substring(1);
 
-            File file = new File(filename);
-            if (file.exists() && !file.isDirectory()) {
-                String mimeType = getMimeType(filename);
-                exchange.getResponseHeaders().set("Content-Type", mimeType);
-                exchange.sendResponseHeaders(200, file.length());
-                Files.copy(file.toPath(), exchange.getResponseBody());
-                exchange.getResponseBody().close();
+            StaticFileCache.Entry entry = cache.get(filename);
+            if (entry != null) {
+                String mimeType = entry.mimeType();
+                Headers requestHeaders = exchange.getRequestHeaders();
+                StaticFileCache.Variant variant = entry.select(requestHeaders.getFirst("Accept-Encoding"));
+
+                Headers headers = exchange.getResponseHeaders();
+                headers.set("ETag", variant.etag());
+                headers.set("Last-Modified", entry.lastModifiedHeader());
+                if (entry.hasEncodings()) {
+                    headers.set("Vary", "Accept-Encoding");
+                }
+
+                if (entry.notModified(variant, requestHeaders.getFirst("If-None-Match"),
+                        requestHeaders.getFirst("If-Modified-Since"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+
+                headers.set("Accept-Ranges", "bytes");
+                String rangeHeader = requestHeaders.getFirst("Range");
+                if (rangeHeader != null && entry.ifRangeMatches(requestHeaders.getFirst("If-Range"))) {
+                    List<ByteRange> ranges = ByteRange.parse(rangeHeader, entry.size());
+                    if (ranges != null) {
+                        // 区间总是作用在原始内容上，不对压缩变体取区间
+                        sendRanges(exchange, entry, ranges);
+                        return;
+                    }
+                }
+
+                headers.set("Content-Type", mimeType);
+                if (variant.encoding() != null) {
+                    headers.set("Content-Encoding", variant.encoding());
+                }
+                exchange.sendResponseHeaders(200, variant.length());
+                try (OutputStream os = exchange.getResponseBody()) {
+                    if (variant.content() != null) {
+                        os.write(variant.content());
+                    } else {
+                        try (FileChannel channel = FileChannel.open(entry.path(), StandardOpenOption.READ)) {
+                            transfer(channel, os, 0, variant.length());
+                        }
+                    }
+                }
 
-                String clientIp = exchange.getRemoteAddress().getAddress().getHostAddress();
-                System.out.println("📁 来自 " + clientIp + " 的请求: " + filename + " (" + mimeType + ")");
             } else {
                 String response = "404 - 文件未找到";
                 exchange.sendResponseHeaders(404, response.getBytes().length);
                 OutputStream os = exchange.getResponseBody();
                 os.write(response.getBytes());
                 os.close();
-                System.out.println("❌ 文件未找到: " + filename);
             }
         }
 
-        private String getMimeType(String filename) {
+        private void sendRanges(HttpExchange exchange, StaticFileCache.Entry entry,
+                                List<ByteRange> ranges) throws IOException {
+            Headers headers = exchange.getResponseHeaders();
+            headers.remove("Vary");
+            headers.set("ETag", entry.identity().etag());
+            if (ranges.isEmpty()) {
+                headers.set("Content-Range", "bytes */" + entry.size());
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] content = entry.identity().content();
+            try (FileChannel channel = content == null ? FileChannel.open(entry.path(), StandardOpenOption.READ) : null) {
+                if (ranges.size() == 1) {
+                    ByteRange range = ranges.get(0);
+                    headers.set("Content-Type", entry.mimeType());
+                    headers.set("Content-Range", range.contentRange(entry.size()));
+                    exchange.sendResponseHeaders(206, range.length());
+                    try (OutputStream os = exchange.getResponseBody()) {
+                        writeRange(content, channel, os, range);
+                    }
+                    return;
+                }
+
+                // 多区间: multipart/byteranges，先算出每段的头部以便给出准确的Content-Length
+                String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+                byte[][] partHeaders = new byte[ranges.size()][];
+                long totalLength = 0;
+                for (int i = 0; i < ranges.size(); i++) {
+                    ByteRange range = ranges.get(i);
+                    partHeaders[i] = ("\r\n--" + boundary + "\r\nContent-Type: " + entry.mimeType()
+                            + "\r\nContent-Range: " + range.contentRange(entry.size()) + "\r\n\r\n")
+                            .getBytes(StandardCharsets.US_ASCII);
+                    totalLength += partHeaders[i].length + range.length();
+                }
+                byte[] closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+                totalLength += closing.length;
+
+                headers.set("Content-Type", "multipart/byteranges; boundary=" + boundary);
+                exchange.sendResponseHeaders(206, totalLength);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    for (int i = 0; i < ranges.size(); i++) {
+                        os.write(partHeaders[i]);
+                        writeRange(content, channel, os, ranges.get(i));
+                    }
+                    os.write(closing);
+                }
+            }
+        }
+
+        private static void writeRange(byte[] content, FileChannel channel, OutputStream os,
+                                       ByteRange range) throws IOException {
+            if (content != null) {
+                os.write(content, (int) range.start(), (int) range.length());
+            } else {
+                transfer(channel, os, range.start(), range.length());
+            }
+        }
+
+        /**
+         * 用 FileChannel 按位置读取文件区间写出，不把整个文件读进堆
+         */
+        private static void transfer(FileChannel channel, OutputStream os, long position, long count) throws IOException {
+            WritableByteChannel target = Channels.newChannel(os);
+            while (count > 0) {
+                long transferred = channel.transferTo(position, count, target);
+                if (transferred <= 0) {
+                    throw new EOFException("文件在发送过程中被截断");
+                }
+                position += transferred;
+                count -= transferred;
+            }
+        }
+
+        static String getMimeType(String filename) {
             String lowerFilename = filename.toLowerCase();
             if (lowerFilename.endsWith(".html")) return "text/html";
             if (lowerFilename.endsWith(".css")) return "text/css";
@@ -117,6 +1305,7 @@ public class WebServer {
             if (lowerFilename.endsWith(".gif")) return "image/gif";
             if (lowerFilename.endsWith(".json")) return "application/json";
             if (lowerFilename.endsWith(".ico")) return "image/x-icon";
+            if (lowerFilename.endsWith(".svg")) return "image/svg+xml";
             return "text/plain";
         }
     }
@@ -144,73 +1333,65 @@ public class WebServer {
                     return;
                 }
 
-                // 读取请求体
-                InputStream requestBody = exchange.getRequestBody();
-                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                byte[] data = new byte[4096];
-                int nRead;
-                while ((nRead = requestBody.read(data, 0, data.length)) != -1) {
-                    buffer.write(data, 0, nRead);
-                }
-                buffer.flush();
-                byte[] requestData = buffer.toByteArray();
-
-                // 解析 multipart 数据
                 String boundary = extractBoundary(contentType);
                 if (boundary == null) {
                     sendResponse(exchange, 400, "{\"success\": false, \"message\": \"无效的边界\"}");
                     return;
                 }
 
-                // 提取文件内容
-                byte[] fileContent = extractFileContent(requestData, boundary.getBytes());
-                if (fileContent == null || fileContent.length == 0) {
-                    sendResponse(exchange, 400, "{\"success\": false, \"message\": \"未找到文件内容\"}");
-                    return;
+                long maxBytes = configManager.getUploadMaxBytes();
+                String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+                if (contentLength != null) {
+                    long declared;
+                    try {
+                        declared = Long.parseLong(contentLength.trim());
+                    } catch (NumberFormatException e) {
+                        declared = -1;
+                    }
+                    if (declared < 0) {
+                        sendError(exchange, 400, "无效的Content-Length");
+                        return;
+                    }
+                    if (declared > maxBytes) {
+                        sendResponse(exchange, 413, "{\"success\": false, \"message\": \"上传内容超过限制\"}");
+                        return;
+                    }
                 }
 
-                // 第一步：将上传的文件保存为 index-update.html
-                File updateFile = new File("index-update.html");
-                try (FileOutputStream fos = new FileOutputStream(updateFile)) {
-                    fos.write(fileContent);
+                // 流式解析 multipart 数据，文件部分直接落盘到临时文件
+                List<MultipartParser.Part> parts;
+                try {
+                    parts = new MultipartParser(boundary, Paths.get("."), maxBytes).parse(exchange.getRequestBody());
+                } catch (MultipartParser.TooLargeException e) {
+                    sendError(exchange, 413, e.getMessage());
+                    return;
+                } catch (MultipartParser.MalformedException e) {
+                    sendError(exchange, 400, e.getMessage());
+                    return;
                 }
 
-                // 第二步：删除当前的 index.html（如果存在）
-                File currentIndex = new File("index.html");
-                if (currentIndex.exists()) {
-                    if (!currentIndex.delete()) {
-                        sendResponse(exchange, 500, "{\"success\": false, \"message\": \"无法删除当前index.html\"}");
+                try {
+                    MultipartParser.Part filePart = selectFilePart(parts);
+                    if (filePart == null || filePart.size() == 0) {
+                        sendResponse(exchange, 400, "{\"success\": false, \"message\": \"未找到文件内容\"}");
                         return;
                     }
-                }
 
-                // 第三步：将 index-update.html 重命名为 index.html
-                if (!updateFile.renameTo(new File("index.html"))) {
-                    sendResponse(exchange, 500, "{\"success\": false, \"message\": \"无法重命名文件\"}");
-                    return;
+                    // 临时文件落盘后原子替换 index.html，监听端口不动，正在发送旧页面的响应照常完成
+                    webServer.publish(filePart.file(), "index.html");
+                } finally {
+                    for (MultipartParser.Part part : parts) {
+                        part.delete();
+                    }
                 }
 
                 // 发送成功响应
-                String response = "{\"success\": true, \"message\": \"文件上传成功，服务器将重启\"}";
+                String response = "{\"success\": true, \"message\": \"文件上传成功，新页面已发布\"}";
                 sendResponse(exchange, 200, response);
 
-                // 记录上传日志
-                String clientIp = exchange.getRemoteAddress().getAddress().getHostAddress();
-                System.out.println("📤 来自 " + clientIp + " 的文件上传成功，已替换index.html");
-
-                // 在单独的线程中重启服务器，避免阻塞响应
-                new Thread(() -> {
-                    try {
-                        Thread.sleep(1000); // 等待1秒确保响应已发送
-                        webServer.restart(); // 使用传入的webServer实例
-                    } catch (Exception e) {
-                        System.err.println("重启服务器时出错: " + e.getMessage());
-                    }
-                }).start();
-
             } catch (Exception e) {
                 System.err.println("处理文件上传时出错: " + e.getMessage());
-                sendResponse(exchange, 500, "{\"success\": false, \"message\": \"服务器错误: " + e.getMessage() + "\"}");
+                sendError(exchange, 500, "服务器错误: " + e.getMessage());
             }
         }
 
@@ -219,50 +1400,40 @@ public class WebServer {
             for (String part : parts) {
                 part = part.trim();
                 if (part.startsWith("boundary=")) {
-                    return part.substring("boundary=".length());
+                    String boundary = part.substring("boundary=".length());
+                    if (boundary.length() >= 2 && boundary.startsWith("\"") && boundary.endsWith("\"")) {
+                        boundary = boundary.substring(1, boundary.length() - 1);
+                    }
+                    return MultipartParser.isValidBoundary(boundary) ? boundary : null;
                 }
             }
             return null;
         }
 
-        private byte[] extractFileContent(byte[] requestData, byte[] boundary) {
-            // 查找文件内容的开始和结束位置
-            byte[] startPattern = ("\r\n\r\n").getBytes();
-            byte[] endPattern = ("\r\n--" + new String(boundary)).getBytes();
-
-            int startIndex = indexOf(requestData, startPattern, 0);
-            if (startIndex == -1) return null;
-            startIndex += startPattern.length;
-
-            int endIndex = indexOf(requestData, endPattern, startIndex);
-            if (endIndex == -1) return null;
-
-            // 提取文件内容
-            byte[] fileContent = new byte[endIndex - startIndex];
-            System.arraycopy(requestData, startIndex, fileContent, 0, fileContent.length);
-            return fileContent;
-        }
-
-        private int indexOf(byte[] source, byte[] target, int fromIndex) {
-            if (fromIndex >= source.length) return -1;
-            if (target.length == 0) return fromIndex;
-
-            byte first = target[0];
-            int max = source.length - target.length;
-
-            for (int i = fromIndex; i <= max; i++) {
-                if (source[i] != first) continue;
-
-                boolean found = true;
-                for (int j = 1; j < target.length; j++) {
-                    if (source[i + j] != target[j]) {
-                        found = false;
-                        break;
-                    }
+        /**
+         * 优先取页面上传使用的 htmlFile 字段，否则取第一个文件部分
+         */
+        private MultipartParser.Part selectFilePart(List<MultipartParser.Part> parts) {
+            MultipartParser.Part first = null;
+            for (MultipartParser.Part part : parts) {
+                if (!part.isFile()) {
+                    continue;
+                }
+                if ("htmlFile".equals(part.name())) {
+                    return part;
+                }
+                if (first == null) {
+                    first = part;
                 }
-                if (found) return i;
             }
-            return -1;
+            return first;
+        }
+
+        /**
+         * 错误信息可能来自异常，经过JSON转义再拼进响应
+         */
+        private void sendError(HttpExchange exchange, int statusCode, String message) throws IOException {
+            sendResponse(exchange, statusCode, new EventHub.Json().put("success", false).put("message", message).toString());
         }
 
         private void sendResponse(HttpExchange exchange, int statusCode, String response) throws IOException {
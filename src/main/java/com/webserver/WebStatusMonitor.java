@@ -1,27 +1,49 @@
 package com.webserver;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.InetAddress;
-import java.net.URL;
+import java.net.URI;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * 并发监控多个目标。
+ * 每个目标独立调度，探测在虚拟线程上执行(见 HttpProbe)，调度线程从不阻塞，
+ * 一个慢目标不会推迟其他目标的检查。每次探测结束后才安排下一次，间隔按结果自适应:
+ * 正常时按目标间隔；首次失败后快速复查几次确认故障；确认后按指数退避降低对故障目标的探测频率；
+ * 所有间隔加随机抖动，所有目标共享每秒探测预算。
+ */
 public class WebStatusMonitor {
+    /** 滑动统计窗口: 1分钟, 5分钟, 1小时 */
+    private static final long[] WINDOWS_MILLIS = {60_000, 300_000, 3_600_000};
+    private static final String[] WINDOW_NAMES = {"1分钟", "5分钟", "1小时"};
+
     private final ConfigManager configManager;
     private final WebServer webServer;
     private ScheduledExecutorService scheduler;
-    private boolean monitoring = false;
-    private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
-    private final AtomicLong totalResponseTime = new AtomicLong(0);
-    private final AtomicInteger totalChecks = new AtomicInteger(0);
+    private ExecutorService probeExecutor;
+    private ProbeBudget budget;
+    private long recheckMillis;
+    private int confirmChecks;
+    private long backoffMaxMillis;
+    private int jitterPercent;
+    private volatile MonitorHistory history;
+    private volatile boolean monitoring = false;
+    /** 每次启动和停止加一，上一轮遗留的探测完成后按它丢弃，不会在新一轮的调度器上继续安排 */
+    private volatile long generation = 0;
+    private volatile List<TargetState> targets = Collections.emptyList();
     private String localIpAddress = "127.0.0.1";
 
     public WebStatusMonitor(ConfigManager configManager, WebServer webServer) {
@@ -35,145 +57,312 @@ public class WebStatusMonitor {
         }
     }
 
-    public void startMonitoring() {
+    public synchronized void startMonitoring() {
         if (monitoring) {
             System.out.println("ℹ Web状态监控已在运行中");
             return;
         }
 
-        monitoring = true;
-        scheduler = Executors.newSingleThreadScheduledExecutor();
+        long run = generation + 1;
+        List<TargetState> states = new ArrayList<>();
+        for (MonitorTarget target : resolveTargets()) {
+            states.add(new TargetState(target, run));
+        }
+        if (states.isEmpty()) {
+            System.err.println("✗ 没有有效的监控目标");
+            return;
+        }
 
-        System.out.println("✓ Web状态监控已启动 (间隔: 5秒)");
+        getHistory();
+        generation = run;
+        monitoring = true;
+        targets = Collections.unmodifiableList(states);
+        probeExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("web-monitor-probe-", 0).factory());
+        budget = new ProbeBudget(configManager.getMonitorProbeBudget());
+        recheckMillis = configManager.getMonitorRecheckMillis();
+        confirmChecks = configManager.getMonitorConfirmChecks();
+        backoffMaxMillis = configManager.getMonitorBackoffMaxSeconds() * 1000L;
+        jitterPercent = configManager.getMonitorJitterPercent();
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "web-monitor-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        System.out.println("✓ Web状态监控已启动 (" + states.size() + " 个目标)");
         System.out.println("📡 本机IP地址: " + localIpAddress);
-
-        scheduler.scheduleAtFixedRate(this::checkWebStatus, 0, 5, TimeUnit.SECONDS);
+        for (int i = 0; i < states.size(); i++) {
+            TargetState state = states.get(i);
+            System.out.println("  - " + state.target);
+            // 错开各目标的首次检查，避免所有探测在同一时刻发出
+            scheduleNext(state, jitter(state.target.intervalMillis() * i / states.size()));
+        }
     }
 
-    public void stopMonitoring() {
+    public synchronized void stopMonitoring() {
         if (scheduler != null) {
-            scheduler.shutdown();
-            try {
-                if (!scheduler.awaitTermination(3, TimeUnit.SECONDS)) {
-                    scheduler.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                scheduler.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
+            // 待执行的都是下一次探测的延迟任务，直接丢弃
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        if (probeExecutor != null) {
+            // 中断进行中的探测，它们的结果在 monitoring=false 后被丢弃
+            probeExecutor.shutdownNow();
+            probeExecutor = null;
         }
         monitoring = false;
+        generation++;
+        if (history != null) {
+            // 下次启动或查询时按当时的配置重新打开
+            history.close();
+            history = null;
+        }
         System.out.println("✓ Web状态监控已停止");
     }
 
-    private void checkWebStatus() {
-        String monitorUrl = configManager.getMonitorWebStatus();
-        String targetUrl;
-        boolean isLocal = false;
+    /**
+     * 未配置目标时监控本机Web服务器
+     */
+    private List<MonitorTarget> resolveTargets() {
+        long interval = configManager.getMonitorIntervalSeconds() * 1000L;
+        long timeout = configManager.getMonitorTimeoutSeconds() * 1000L;
+        String configured = configManager.getMonitorWebStatus();
+        if (configured.isEmpty()) {
+            return List.of(MonitorTarget.local(localIpAddress, webServer.getPort(), interval, timeout));
+        }
+        return MonitorTarget.parseList(configured, interval, timeout);
+    }
 
-        if (monitorUrl.isEmpty()) {
-            targetUrl = "http://" + localIpAddress + ":" + webServer.getPort();
-            isLocal = true;
-        } else {
-            targetUrl = monitorUrl;
-            if (!targetUrl.startsWith("http://") && !targetUrl.startsWith("https://")) {
-                targetUrl = "http://" + targetUrl;
-            }
+    /**
+     * 本机目标每次按Web服务器当前端口生成地址，'restart web' 换端口后不需要重启监控
+     */
+    private String urlOf(MonitorTarget target) {
+        if (target.isLocal() && webServer != null) {
+            return "http://" + localIpAddress + ":" + webServer.getPort();
         }
+        return target.url();
+    }
 
+    /**
+     * 目标是否属于正在运行的这一轮监控
+     */
+    private boolean isCurrent(TargetState state) {
+        return monitoring && state.generation == generation;
+    }
+
+    /**
+     * 与 stopMonitoring/startMonitoring 互斥：检查通过后不会被换成下一轮的调度器
+     */
+    private synchronized void scheduleNext(TargetState state, long delayMillis) {
+        if (!isCurrent(state) || scheduler == null) {
+            return;
+        }
+        state.nextCheckAt = System.currentTimeMillis() + delayMillis;
         try {
-            URL url = new URL(targetUrl);
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-            connection.setRequestMethod("GET");
-            connection.setConnectTimeout(5000);
-            connection.setReadTimeout(5000);
-            connection.setRequestProperty("User-Agent", "WebServerMonitor/1.0");
-
-            long startTime = System.currentTimeMillis();
-            int responseCode = connection.getResponseCode();
-            long responseTime = System.currentTimeMillis() - startTime;
-
-            long contentLength = connection.getContentLengthLong();
-            String contentType = connection.getContentType();
-            String serverHeader = connection.getHeaderField("Server");
-
-            totalResponseTime.addAndGet(responseTime);
-            totalChecks.incrementAndGet();
-            consecutiveFailures.set(0);
+            scheduler.schedule(() -> probe(state), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 监控已停止
+        }
+    }
 
-            String statusReport = generateStatusReport(
-                    targetUrl, responseCode, responseTime, contentLength,
-                    contentType, serverHeader, isLocal, true
-            );
+    /**
+     * 到期的检查先从共享预算里取令牌，预算不足时推迟到有令牌的时刻再发送
+     */
+    private void probe(TargetState state) {
+        ProbeBudget currentBudget = budget;
+        ScheduledExecutorService current = scheduler;
+        if (!isCurrent(state) || currentBudget == null || current == null) {
+            return;
+        }
+        long waitNanos = currentBudget.reserve();
+        if (waitNanos <= 0) {
+            send(state);
+            return;
+        }
+        state.budgetDelayed.incrementAndGet();
+        try {
+            current.schedule(() -> send(state), waitNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // 监控已停止
+        }
+    }
 
-            System.out.println(statusReport);
+    private void send(TargetState state) {
+        ExecutorService executor = probeExecutor;
+        if (!isCurrent(state) || executor == null) {
+            return;
+        }
+        MonitorTarget target = state.target;
+        URI uri = URI.create(urlOf(target));
+        try {
+            executor.execute(() -> {
+                HttpProbe.Result result = HttpProbe.run(uri, target.timeoutMillis());
+                HttpProbe.verify(result, target);
+                complete(state, result);
+            });
+        } catch (RejectedExecutionException e) {
+            // 监控已停止
+        }
+    }
+
+    /**
+     * 停止后或属于上一轮的结果直接丢弃。写历史在锁内进行，stopMonitoring 关闭历史后不会再被写入而重新打开
+     */
+    private void complete(TargetState state, HttpProbe.Result result) {
+        ProbeOutcome outcome = result.outcome;
+        long responseTime = result.totalMillis();
+        synchronized (this) {
+            if (!isCurrent(state)) {
+                return;
+            }
+            state.record(outcome, responseTime);
+            if (history != null) {
+                history.append(state.target.url(), System.currentTimeMillis(), responseTime, outcome);
+            }
+        }
+        publishProbe(state, result);
+        System.out.println(generateStatusReport(state, result));
+        announceTransition(state, outcome);
+        scheduleNext(state, nextDelay(state, responseTime));
+    }
 
-            connection.disconnect();
+    /**
+     * 下一次检查的延迟: 正常时保持目标间隔(扣除本次耗时)，失败后先快速复查 confirmChecks 次，
+     * 仍然失败则从目标间隔开始按2的幂退避，不超过上限
+     */
+    long nextDelay(TargetState state, long elapsedMillis) {
+        long interval = state.target.intervalMillis();
+        int failures = state.consecutiveFailures.get();
+        long delay;
+        if (failures == 0) {
+            delay = Math.max(0, interval - elapsedMillis);
+        } else if (failures <= confirmChecks) {
+            delay = Math.min(recheckMillis, interval);
+        } else {
+            int doublings = Math.min(failures - confirmChecks, 30);
+            delay = Math.min(interval << doublings, Math.max(backoffMaxMillis, interval));
+        }
+        return jitter(delay);
+    }
 
-        } catch (Exception e) {
-            consecutiveFailures.incrementAndGet();
-            totalChecks.incrementAndGet();
+    /**
+     * 在 [delay*(1-p), delay*(1+p)] 内随机取值，避免多个目标同步探测
+     */
+    private long jitter(long delayMillis) {
+        if (delayMillis <= 0 || jitterPercent <= 0) {
+            return delayMillis;
+        }
+        double spread = delayMillis * jitterPercent / 100.0;
+        return Math.max(0, Math.round(delayMillis + ThreadLocalRandom.current().nextDouble(-spread, spread)));
+    }
 
-            String statusReport = generateStatusReport(
-                    targetUrl, -1, -1, -1,
-                    null, null, isLocal, false
-            );
+    /**
+     * 确认故障和恢复时单独提示
+     */
+    private void announceTransition(TargetState state, ProbeOutcome outcome) {
+        int failures = state.consecutiveFailures.get();
+        if (outcome != ProbeOutcome.OK && failures == confirmChecks + 1) {
+            state.downSince = System.currentTimeMillis();
+            System.out.println("⚠ " + urlOf(state.target) + " 连续 " + failures + " 次检查失败，确认故障 ("
+                    + outcome.label() + ")，之后按退避间隔检查");
+        } else if (outcome == ProbeOutcome.OK && state.downSince > 0) {
+            long seconds = (System.currentTimeMillis() - state.downSince) / 1000;
+            state.downSince = 0;
+            System.out.println("✓ " + urlOf(state.target) + " 已恢复，故障持续约 " + seconds + " 秒");
+        }
+    }
 
-            System.out.println(statusReport);
+    /**
+     * 把探测结果和最近1分钟的统计推送到实时事件流
+     */
+    private void publishProbe(TargetState state, HttpProbe.Result result) {
+        if (webServer == null) {
+            return;
         }
+        String url = urlOf(state.target);
+        ProbeWindow.Stats minute = state.window.stats(WINDOWS_MILLIS[0], System.currentTimeMillis());
+        webServer.getEvents().publish("probe", "probe:" + state.target.url(), new EventHub.Json()
+                .put("target", url)
+                .put("local", state.target.isLocal())
+                .put("ok", result.outcome == ProbeOutcome.OK)
+                .put("outcome", result.outcome.label())
+                .put("detail", result.detail)
+                .put("code", result.statusCode)
+                .put("latencyMs", result.totalMillis())
+                .put("dnsMs", result.dnsNanos / 1e6)
+                .put("connectMs", result.connectNanos / 1e6)
+                .put("tlsMs", result.tlsNanos / 1e6)
+                .put("ttfbMs", result.ttfbNanos / 1e6)
+                .put("downloadMs", result.downloadNanos / 1e6)
+                .put("bytes", result.bodyBytes)
+                .put("consecutiveFailures", state.consecutiveFailures.get())
+                .put("successRatio1m", minute.successRatio())
+                .put("p95Ms1m", minute.percentile(0.95))
+                .put("time", System.currentTimeMillis())
+                .toString());
     }
 
-    private String generateStatusReport(String url, int responseCode, long responseTime,
-                                        long contentLength, String contentType,
-                                        String serverHeader, boolean isLocal, boolean success) {
+    String generateStatusReport(TargetState state, HttpProbe.Result result) {
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         String timestamp = sdf.format(new Date());
+        int responseCode = result.statusCode;
 
         StringBuilder report = new StringBuilder();
         report.append("=== Web状态监控报告 ===\n");
         report.append("时间: ").append(timestamp).append("\n");
-        report.append("目标: ").append(url);
-        if (isLocal) {
+        report.append("目标: ").append(urlOf(state.target));
+        if (state.target.isLocal()) {
             report.append(" (本地服务器)");
         }
+        if (result.remoteAddress != null) {
+            report.append(" [").append(result.remoteAddress).append("]");
+        }
         report.append("\n");
 
-        if (success) {
+        if (result.outcome == ProbeOutcome.OK) {
             report.append("状态: ✓ 正常\n");
             report.append("响应码: ").append(responseCode).append(" ").append(getHttpStatusText(responseCode)).append("\n");
-            report.append("响应时间: ").append(responseTime).append("ms\n");
-
-            if (contentLength >= 0) {
-                report.append("内容长度: ");
-                if (contentLength < 1024) {
-                    report.append(contentLength).append(" B\n");
-                } else if (contentLength < 1024 * 1024) {
-                    report.append(String.format("%.2f KB", contentLength / 1024.0)).append("\n");
-                } else {
-                    report.append(String.format("%.2f MB", contentLength / (1024.0 * 1024.0))).append("\n");
-                }
+            report.append("响应时间: ").append(result.totalMillis()).append("ms\n");
+            appendPhases(report, result);
+
+            report.append("内容长度: ").append(formatBytes(result.bodyBytes)).append("\n");
+            if (result.sha256 != null) {
+                report.append("CRC32C: ").append(result.crc32c)
+                        .append("  SHA-256: ").append(HttpProbe.abbreviate(result.sha256)).append("\n");
+            }
+            if (result.verified) {
+                report.append("内容校验: ✓ 通过\n");
             }
 
-            if (contentType != null) {
-                report.append("内容类型: ").append(contentType).append("\n");
+            if (result.contentType != null) {
+                report.append("内容类型: ").append(result.contentType).append("\n");
             }
 
-            if (serverHeader != null) {
-                report.append("服务器: ").append(serverHeader).append("\n");
+            if (result.serverHeader != null) {
+                report.append("服务器: ").append(result.serverHeader).append("\n");
             }
         } else {
             report.append("状态: ✗ 异常\n");
-            report.append("错误: 连接失败或超时\n");
-            report.append("连续失败次数: ").append(consecutiveFailures.get()).append("\n");
+            report.append("错误: ").append(result.outcome.label());
+            if (responseCode > 0) {
+                report.append(" (").append(responseCode).append(" ").append(getHttpStatusText(responseCode)).append(")");
+            }
+            report.append("\n");
+            if (result.detail != null) {
+                report.append("详情: ").append(result.detail).append("\n");
+            }
+            appendPhases(report, result);
+            report.append("连续失败次数: ").append(state.consecutiveFailures.get()).append("\n");
         }
 
-        if (totalChecks.get() > 0) {
-            double avgResponseTime = (double) totalResponseTime.get() / totalChecks.get();
+        long totalChecks = state.totalChecks.get();
+        if (totalChecks > 0) {
             report.append("--- 统计信息 ---\n");
-            report.append("总检查次数: ").append(totalChecks.get()).append("\n");
-            report.append("平均响应时间: ").append(String.format("%.2f", avgResponseTime)).append("ms\n");
-            double successRate = ((double) (totalChecks.get() - consecutiveFailures.get()) / totalChecks.get()) * 100;
-            report.append("成功率: ").append(String.format("%.2f", successRate)).append("%\n");
+            report.append("总检查次数: ").append(totalChecks).append("\n");
+            appendWindowStats(report, state, System.currentTimeMillis());
+            if (state.budgetDelayed.get() > 0) {
+                report.append("因探测预算推迟: ").append(state.budgetDelayed.get()).append(" 次\n");
+            }
         }
 
         report.append("=====================");
@@ -181,6 +370,138 @@ public class WebStatusMonitor {
         return report.toString();
     }
 
+    /**
+     * 各阶段耗时，失败的探测只显示已经完成的阶段
+     */
+    private static void appendPhases(StringBuilder report, HttpProbe.Result result) {
+        if (result.remoteAddress == null) {
+            return;
+        }
+        report.append("耗时分解: DNS ").append(formatNanos(result.dnsNanos));
+        if (result.connectNanos > 0) {
+            report.append(", 连接 ").append(formatNanos(result.connectNanos));
+        }
+        if (result.tlsNanos > 0) {
+            report.append(", TLS ").append(formatNanos(result.tlsNanos));
+        }
+        if (result.ttfbNanos > 0) {
+            report.append(", 首字节 ").append(formatNanos(result.ttfbNanos))
+                    .append(", 下载 ").append(formatNanos(result.downloadNanos));
+        }
+        report.append("\n");
+    }
+
+    private static String formatNanos(long nanos) {
+        return String.format("%.1fms", nanos / 1e6);
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        } else if (bytes < 1024 * 1024) {
+            return String.format("%.2f KB", bytes / 1024.0);
+        }
+        return String.format("%.2f MB", bytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * 各滑动窗口的成功率、成功探测的响应时间分位数和失败原因
+     */
+    private void appendWindowStats(StringBuilder report, TargetState state, long now) {
+        report.append(String.format("%-6s %4s %6s %8s %8s %8s  %s%n",
+                "窗口", "检查", "成功率", "p50", "p95", "p99", "失败原因"));
+        for (int i = 0; i < WINDOWS_MILLIS.length; i++) {
+            ProbeWindow.Stats stats = state.window.stats(WINDOWS_MILLIS[i], now);
+            if (stats.total() == 0) {
+                continue;
+            }
+            report.append(String.format("%-6s %4d %8.2f%% %8s %8s %8s  %s%n",
+                    WINDOW_NAMES[i], stats.total(), stats.successRatio() * 100,
+                    formatMillis(stats.percentile(0.50)), formatMillis(stats.percentile(0.95)),
+                    formatMillis(stats.percentile(0.99)), stats.describeFailures()));
+        }
+    }
+
+    private static String formatMillis(int millis) {
+        return millis < 0 ? "-" : millis + "ms";
+    }
+
+    /**
+     * 各目标最近状态和滑动窗口统计，供 monitor status 命令显示
+     */
+    public String describeTargets() {
+        StringBuilder sb = new StringBuilder();
+        long now = System.currentTimeMillis();
+        for (TargetState state : targets) {
+            sb.append(urlOf(state.target));
+            if (state.target.isLocal()) {
+                sb.append(" (本地服务器)");
+            }
+            sb.append(" - ").append(state.lastOutcome == null ? "尚未检查" : state.lastOutcome.label());
+            if (state.consecutiveFailures.get() > 0) {
+                sb.append(", 连续失败 ").append(state.consecutiveFailures.get()).append(" 次");
+            }
+            long untilNext = state.nextCheckAt - now;
+            if (untilNext > 0) {
+                sb.append(String.format(", 下次检查 %.1fs 后", untilNext / 1000.0));
+            }
+            sb.append("\n");
+            appendWindowStats(sb, state, now);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 从历史存储按时间桶汇总最近 rangeMillis 内各目标的检查结果，供 monitor history 命令显示
+     */
+    public String describeHistory(long rangeMillis, long bucketMillis) throws IOException {
+        MonitorHistory store = getHistory();
+        if (store == null) {
+            return "ℹ 监控历史未启用 (monitor_history_enabled=false)\n";
+        }
+        List<MonitorTarget> monitored = getTargets();
+        if (monitored.isEmpty()) {
+            monitored = resolveTargets();
+        }
+        long now = System.currentTimeMillis();
+        SimpleDateFormat sdf = new SimpleDateFormat(bucketMillis < MonitorHistory.MINUTE_MILLIS
+                ? "MM-dd HH:mm:ss" : "MM-dd HH:mm");
+        StringBuilder sb = new StringBuilder();
+        for (MonitorTarget target : monitored) {
+            sb.append("目标: ").append(target.url()).append("\n");
+            List<MonitorHistory.Bucket> buckets = store.query(target.url(), now - rangeMillis, now, bucketMillis);
+            int shown = 0;
+            for (MonitorHistory.Bucket bucket : buckets) {
+                if (bucket.count() == 0) {
+                    continue;
+                }
+                if (shown++ == 0) {
+                    sb.append(String.format("%-12s %6s %6s %7s %6s %6s%n",
+                            "时间", "检查", "成功率", "平均", "最小", "最大"));
+                }
+                sb.append(String.format("%-14s %8d %8.2f%% %9s %8s %8s%n",
+                        sdf.format(new Date(bucket.start())), bucket.count(), bucket.successRatio() * 100,
+                        bucket.averageLatency() < 0 ? "-" : String.format("%.1fms", bucket.averageLatency()),
+                        formatMillis(bucket.minLatency()), formatMillis(bucket.maxLatency())));
+            }
+            if (shown == 0) {
+                sb.append("  (无数据)\n");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 监控历史存储，未启用时返回 null。监控停止后仍可查询已写入的数据
+     */
+    public synchronized MonitorHistory getHistory() {
+        if (history == null && configManager != null && configManager.isMonitorHistoryEnabled()) {
+            history = new MonitorHistory(Paths.get(configManager.getMonitorHistoryDir()),
+                    configManager.getMonitorHistoryRawDays(), configManager.getMonitorHistoryDays());
+        }
+        return history;
+    }
+
     private String getHttpStatusText(int statusCode) {
         switch (statusCode) {
             case 200: return "OK";
@@ -198,6 +519,7 @@ public class WebStatusMonitor {
         }
     }
 
+
     public boolean isMonitoring() {
         return monitoring;
     }
@@ -208,7 +530,52 @@ public class WebStatusMonitor {
         startMonitoring();
     }
 
+    /**
+     * 当前监控的目标，未运行时为空
+     */
+    public List<MonitorTarget> getTargets() {
+        List<MonitorTarget> result = new ArrayList<>();
+        for (TargetState state : targets) {
+            result.add(state.target);
+        }
+        return result;
+    }
+
     public String getLocalIpAddress() {
         return localIpAddress;
     }
+
+    /**
+     * 单个目标的探测状态和统计
+     */
+    static class TargetState {
+        private final MonitorTarget target;
+        /** 创建它的那一轮监控 */
+        private final long generation;
+        private final ProbeWindow window;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+        private final AtomicLong totalChecks = new AtomicLong(0);
+        private final AtomicLong budgetDelayed = new AtomicLong();
+        private volatile ProbeOutcome lastOutcome;
+        private volatile long nextCheckAt;
+        private volatile long downSince;
+
+        TargetState(MonitorTarget target, long generation) {
+            this.target = target;
+            this.generation = generation;
+            this.window = new ProbeWindow(ProbeWindow.capacityFor(WINDOWS_MILLIS[WINDOWS_MILLIS.length - 1],
+                    target.intervalMillis()));
+        }
+
+        void record(ProbeOutcome outcome, long responseTime) {
+            window.record(System.currentTimeMillis(), outcome == ProbeOutcome.OK ? responseTime : -1, outcome);
+            totalChecks.incrementAndGet();
+            if (outcome == ProbeOutcome.OK) {
+                consecutiveFailures.set(0);
+            } else {
+                consecutiveFailures.incrementAndGet();
+            }
+            lastOutcome = outcome;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,20 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class AccessLogTest {
+
+    @Test
+    void countsEncodedBytesNotChars() {
+        for (String line : new String[] {
+                "127.0.0.1 - - \"GET / HTTP/1.1\" 200 12\n",
+                "GET /文件/首页.html Mozilla/5.0 (Ünïcödé)\n",
+                "emoji 😀 in user agent\n",
+                ""}) {
+            assertEquals(line.getBytes(StandardCharsets.UTF_8).length, AccessLog.utf8Length(line), line);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class AdmissionControllerTest {
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void rejectsImmediatelyWithoutQueue() throws InterruptedException {
+        AdmissionController admission = new AdmissionController(2, 0, 200, 0);
+
+        assertTrue(admission.acquire());
+        assertTrue(admission.acquire());
+        assertFalse(admission.acquire());
+
+        assertEquals(2, admission.getInFlight());
+        assertEquals(1, admission.getRejectedQueueFull());
+        assertEquals(0, admission.getRejectedTimeout());
+        admission.release(-1);
+        assertTrue(admission.acquire());
+    }
+
+    @Test
+    void queuedRequestTakesReleasedSlot() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 1, 5000, 0);
+        assertTrue(admission.acquire());
+
+        CompletableFuture<Boolean> queued = acquireAsync(admission);
+        awaitWaiting(admission, 1);
+        admission.release(-1);
+
+        assertTrue(queued.get(5, TimeUnit.SECONDS));
+        assertEquals(1, admission.getInFlight());
+        assertEquals(0, admission.getShed());
+    }
+
+    @Test
+    void distinguishesQueueFullFromTimeout() throws Exception {
+        AdmissionController admission = new AdmissionController(1, 1, 100, 0);
+        assertTrue(admission.acquire());
+
+        long start = System.nanoTime();
+        CompletableFuture<Boolean> queued = acquireAsync(admission);
+        awaitWaiting(admission, 1);
+        // 队列已满，不等待直接拒绝
+        assertFalse(admission.acquire());
+        assertEquals(1, admission.getRejectedQueueFull());
+
+        // 排队的请求等满超时后被拒绝
+        assertFalse(queued.get(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        assertEquals(1, admission.getRejectedTimeout());
+        assertEquals(2, admission.getShed());
+        assertEquals(0, admission.getWaiting());
+        assertEquals(1, admission.getInFlight());
+    }
+
+    @Test
+    void overflowCountsAsQueueFull() {
+        AdmissionController admission = new AdmissionController(4, 0, 0, 0);
+
+        admission.recordOverflow();
+
+        assertEquals(1, admission.getRejectedQueueFull());
+        assertEquals(1, admission.getShed());
+        assertEquals(0, admission.getInFlight());
+    }
+
+    @Test
+    void slowResponsesDecreaseLimitAtMostOncePerTarget() throws InterruptedException {
+        AdmissionController admission = new AdmissionController(20, 0, 0, 20);
+
+        complete(admission, SLOW);
+        assertEquals(18, admission.getLimit());
+        // 同一个目标时长内的其他慢请求不再降低
+        complete(admission, SLOW);
+        assertEquals(18, admission.getLimit());
+
+        Thread.sleep(25);
+        complete(admission, SLOW);
+        assertEquals(16, admission.getLimit());
+    }
+
+    @Test
+    void limitNeverDropsBelowTenthOfMaximum() throws InterruptedException {
+        AdmissionController admission = new AdmissionController(20, 0, 0, 5);
+
+        for (int i = 0; i < 30; i++) {
+            complete(admission, SLOW);
+            Thread.sleep(6);
+        }
+
+        assertEquals(2, admission.getLimit());
+        assertTrue(admission.acquire());
+        assertTrue(admission.acquire());
+        assertFalse(admission.acquire());
+    }
+
+    @Test
+    void fastResponsesRecoverLimitAdditively() {
+        AdmissionController admission = new AdmissionController(20, 0, 0, 20);
+        complete(admission, SLOW);
+        assertEquals(18, admission.getLimit());
+
+        // 每完成约 limit 个请求上限加1
+        for (int i = 0; i < 10; i++) {
+            complete(admission, FAST);
+        }
+        assertEquals(18, admission.getLimit());
+        int completions = 10;
+        while (admission.getLimit() < 20) {
+            complete(admission, FAST);
+            completions++;
+            assertTrue(completions < 60, "limit did not recover");
+        }
+        assertTrue(completions >= 30, "recovered too fast: " + completions);
+
+        for (int i = 0; i < 100; i++) {
+            complete(admission, FAST);
+        }
+        assertEquals(20, admission.getLimit());
+    }
+
+    @Test
+    void unsampledAndUnadaptiveCompletionsKeepLimit() {
+        AdmissionController adaptive = new AdmissionController(20, 0, 0, 20);
+        complete(adaptive, -1);
+        assertEquals(20, adaptive.getLimit());
+
+        AdmissionController fixed = new AdmissionController(20, 0, 0, 0);
+        complete(fixed, SLOW);
+        assertEquals(20, fixed.getLimit());
+    }
+
+    @Test
+    void configureResetsLimitAndKeepsInFlight() throws InterruptedException {
+        AdmissionController admission = new AdmissionController(20, 0, 0, 20);
+        complete(admission, SLOW);
+        assertTrue(admission.acquire());
+
+        admission.configure(8, 0, 0, 20);
+
+        assertEquals(8, admission.getLimit());
+        assertEquals(8, admission.getMaxLimit());
+        assertEquals(1, admission.getInFlight());
+    }
+
+    private static void complete(AdmissionController admission, long durationNanos) {
+        try {
+            assertTrue(admission.acquire());
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+        admission.release(durationNanos);
+    }
+
+    private static CompletableFuture<Boolean> acquireAsync(AdmissionController admission) {
+        CompletableFuture<Boolean> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(admission.acquire());
+            } catch (InterruptedException e) {
+                result.completeExceptionally(e);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return result;
+    }
+
+    private static void awaitWaiting(AdmissionController admission, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admission.getWaiting() < count) {
+            assertTrue(System.nanoTime() < deadline, "request did not start waiting");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * 自适应上限的延迟样本只算到首字节，响应体的传输时间不算
+ */
+class AdmissionFilterTest {
+    private static final int SLOW_MILLIS = 200;
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private HttpServer server;
+
+    @AfterEach
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        executor.shutdownNow();
+    }
+
+    @Test
+    void slowBodyTransferDoesNotLowerLimit() throws Exception {
+        AdmissionController admission = new AdmissionController(20, 0, 0, 50);
+        URI uri = start(admission, exchange -> {
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write('o');
+                os.flush();
+                pause();
+                os.write('k');
+            }
+        });
+
+        assertEquals("ok", get(uri).body());
+
+        awaitIdle(admission);
+        assertEquals(20, admission.getLimit());
+    }
+
+    @Test
+    void slowFirstByteLowersLimit() throws Exception {
+        AdmissionController admission = new AdmissionController(20, 0, 0, 50);
+        URI uri = start(admission, exchange -> {
+            pause();
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write("ok".getBytes());
+            }
+        });
+
+        assertEquals("ok", get(uri).body());
+
+        awaitIdle(admission);
+        assertEquals(18, admission.getLimit());
+    }
+
+    @Test
+    void slowResponseWithoutBodyLowersLimit() throws Exception {
+        AdmissionController admission = new AdmissionController(20, 0, 0, 50);
+        URI uri = start(admission, exchange -> {
+            pause();
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+        });
+
+        assertEquals(304, get(uri).statusCode());
+
+        awaitIdle(admission);
+        assertEquals(18, admission.getLimit());
+    }
+
+    private URI start(AdmissionController admission, HttpHandler handler) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", handler).getFilters().add(new WebServer.AdmissionFilter(admission, true));
+        server.setExecutor(executor);
+        server.start();
+        return URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                + server.getAddress().getPort() + "/");
+    }
+
+    private HttpResponse<String> get(URI uri) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(SLOW_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 客户端收到响应时处理线程可能还没走出过滤器
+     */
+    private static void awaitIdle(AdmissionController admission) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (admission.getInFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, admission.getInFlight());
+    }
+}
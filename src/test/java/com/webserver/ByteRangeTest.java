@@ -0,0 +1,76 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ByteRangeTest {
+
+    @Test
+    void parsesClosedRange() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-99", 1000);
+
+        assertEquals(1, ranges.size());
+        assertRange(0, 99, ranges.get(0));
+        assertEquals(100, ranges.get(0).length());
+        assertEquals("bytes 0-99/1000", ranges.get(0).contentRange(1000));
+    }
+
+    @Test
+    void clampsOpenAndOverlongRangesToLength() {
+        assertRange(900, 999, ByteRange.parse("bytes=900-", 1000).get(0));
+        assertRange(990, 999, ByteRange.parse("bytes=990-5000", 1000).get(0));
+    }
+
+    @Test
+    void parsesSuffixRange() {
+        assertRange(800, 999, ByteRange.parse("bytes=-200", 1000).get(0));
+        assertRange(0, 999, ByteRange.parse("bytes=-5000", 1000).get(0));
+    }
+
+    @Test
+    void parsesMultipleRangesWithWhitespace() {
+        List<ByteRange> ranges = ByteRange.parse("bytes=0-0, 10-19 ,-1", 100);
+
+        assertEquals(3, ranges.size());
+        assertRange(0, 0, ranges.get(0));
+        assertRange(10, 19, ranges.get(1));
+        assertRange(99, 99, ranges.get(2));
+    }
+
+    @Test
+    void unsatisfiableRangesGiveEmptyList() {
+        assertTrue(ByteRange.parse("bytes=1000-1100", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=-0", 1000).isEmpty());
+        assertTrue(ByteRange.parse("bytes=0-10", 0).isEmpty());
+    }
+
+    @Test
+    void invalidHeadersAreIgnored() {
+        assertNull(ByteRange.parse(null, 1000));
+        assertNull(ByteRange.parse("items=0-10", 1000));
+        assertNull(ByteRange.parse("bytes=10", 1000));
+        assertNull(ByteRange.parse("bytes=20-10", 1000));
+        assertNull(ByteRange.parse("bytes=a-b", 1000));
+        assertNull(ByteRange.parse("bytes=-", 1000));
+        assertNull(ByteRange.parse("bytes=--5", 1000));
+    }
+
+    @Test
+    void tooManyRangesAreIgnored() {
+        StringBuilder header = new StringBuilder("bytes=0-0");
+        for (int i = 1; i <= 16; i++) {
+            header.append(',').append(i).append('-').append(i);
+        }
+
+        assertNull(ByteRange.parse(header.toString(), 1000));
+    }
+
+    private static void assertRange(long start, long end, ByteRange range) {
+        assertEquals(start, range.start());
+        assertEquals(end, range.end());
+    }
+}
@@ -0,0 +1,43 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FilePermissionsTest {
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void requirePosix() throws IOException {
+        assumeTrue(Files.getFileStore(dir).supportsFileAttributeView(PosixFileAttributeView.class));
+    }
+
+    @Test
+    void copiesTargetPermissions() throws IOException {
+        Path target = Files.createFile(dir.resolve("index.html"));
+        Files.setPosixFilePermissions(target, PosixFilePermissions.fromString("rw-r-----"));
+        Path temp = Files.createTempFile(dir, "upload-", ".part");
+
+        FilePermissions.inherit(temp, target);
+
+        assertEquals("rw-r-----", PosixFilePermissions.toString(Files.getPosixFilePermissions(temp)));
+    }
+
+    @Test
+    void defaultsToWorldReadableWhenTargetIsMissing() throws IOException {
+        Path temp = Files.createTempFile(dir, "upload-", ".part");
+
+        FilePermissions.inherit(temp, dir.resolve("index.html"));
+
+        assertEquals("rw-r--r--", PosixFilePermissions.toString(Files.getPosixFilePermissions(temp)));
+    }
+}
@@ -0,0 +1,20 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class MetricsRegistryTest {
+
+    @Test
+    void exportsRegisteredValuesWithTheirType() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.registerGauge("webserver_admission_limit", "Current limit.", () -> 20);
+        metrics.registerCounter("webserver_shed_requests_total", "Rejected requests.", () -> 3);
+
+        String text = metrics.toPrometheus();
+
+        assertTrue(text.contains("# TYPE webserver_admission_limit gauge\nwebserver_admission_limit 20.0\n"), text);
+        assertTrue(text.contains("# TYPE webserver_shed_requests_total counter\nwebserver_shed_requests_total 3.0\n"), text);
+    }
+}
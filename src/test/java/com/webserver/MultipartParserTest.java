@@ -0,0 +1,202 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MultipartParserTest {
+    private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxkTrZu0gW";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void parsesFieldAndFile() throws IOException {
+        byte[] body = body(field("title", "首页"), file("htmlFile", "index.html", "<h1>hi</h1>".getBytes(StandardCharsets.UTF_8)), "--\r\n");
+
+        List<MultipartParser.Part> parts = parser(Long.MAX_VALUE).parse(new ByteArrayInputStream(body));
+
+        assertEquals(2, parts.size());
+        assertEquals("title", parts.get(0).name());
+        assertEquals("首页", parts.get(0).value());
+        assertNull(parts.get(0).file());
+        MultipartParser.Part upload = parts.get(1);
+        assertEquals("htmlFile", upload.name());
+        assertEquals("index.html", upload.filename());
+        assertEquals("text/html", upload.contentType());
+        assertEquals("<h1>hi</h1>", Files.readString(upload.file()));
+    }
+
+    @Test
+    void findsBoundarySplitAcrossReads() throws IOException {
+        // 内容里故意放上与边界前缀相同的字节，边界会落在各种读取位置上
+        byte[] content = ("\r\n--" + BOUNDARY.substring(0, 10) + " not a boundary\r\n-").getBytes(StandardCharsets.ISO_8859_1);
+        byte[] body = body(file("htmlFile", "a.html", content), field("after", "x"), "--\r\n");
+        for (int chunk = 1; chunk <= BOUNDARY.length() + 8; chunk++) {
+            List<MultipartParser.Part> parts = parser(Long.MAX_VALUE).parse(new ChunkedInputStream(body, chunk));
+
+            assertEquals(2, parts.size(), "chunk " + chunk);
+            assertArrayEquals(content, Files.readAllBytes(parts.get(0).file()), "chunk " + chunk);
+            assertEquals("x", parts.get(1).value(), "chunk " + chunk);
+            parts.forEach(MultipartParser.Part::delete);
+        }
+    }
+
+    @Test
+    void findsBoundaryStraddlingBufferRefill() throws IOException {
+        // 大于解析缓冲区(64KB)，边界跨越缓冲区末尾时需要搬移未消费的字节
+        byte[] content = new byte[64 * 1024 - 7];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) ('a' + i % 26);
+        }
+        byte[] body = body(file("htmlFile", "big.html", content), "--\r\n");
+
+        List<MultipartParser.Part> parts = parser(Long.MAX_VALUE).parse(new ChunkedInputStream(body, 4093));
+
+        assertEquals(1, parts.size());
+        assertEquals(content.length, parts.get(0).size());
+        assertArrayEquals(content, Files.readAllBytes(parts.get(0).file()));
+    }
+
+    @Test
+    void rejectsMissingFinalBoundary() throws IOException {
+        byte[] body = body(file("htmlFile", "index.html", "<h1>cut".getBytes(StandardCharsets.UTF_8)), "");
+        byte[] truncated = new byte[body.length - ("\r\n--" + BOUNDARY).length()];
+        System.arraycopy(body, 0, truncated, 0, truncated.length);
+
+        assertThrows(MultipartParser.MalformedException.class,
+                () -> parser(Long.MAX_VALUE).parse(new ByteArrayInputStream(truncated)));
+        assertNoTempFiles();
+    }
+
+    @Test
+    void rejectsBodyWithoutBoundary() {
+        byte[] body = "just some bytes".getBytes(StandardCharsets.US_ASCII);
+
+        assertThrows(MultipartParser.MalformedException.class,
+                () -> parser(Long.MAX_VALUE).parse(new ByteArrayInputStream(body)));
+    }
+
+    @Test
+    void rejectsBodyOverLimitAndDeletesParts() throws IOException {
+        byte[] body = body(field("title", "x"), file("htmlFile", "big.html", new byte[200 * 1024]), "--\r\n");
+
+        assertThrows(MultipartParser.TooLargeException.class,
+                () -> parser(100 * 1024).parse(new ChunkedInputStream(body, 8192)));
+        assertNoTempFiles();
+    }
+
+    @Test
+    void rejectsOversizedFormField() {
+        byte[] body = body(field("title", "x".repeat(64 * 1024 + 1)), "--\r\n");
+
+        MultipartParser.MalformedException e = assertThrows(MultipartParser.MalformedException.class,
+                () -> parser(Long.MAX_VALUE).parse(new ByteArrayInputStream(body)));
+        assertTrue(e.getMessage().contains("表单字段过大"));
+    }
+
+    @Test
+    void rejectsEmptyOrOverlongBoundary() {
+        assertThrows(IllegalArgumentException.class, () -> new MultipartParser("", tempDir, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultipartParser("b".repeat(MultipartParser.MAX_BOUNDARY_LENGTH + 1), tempDir, Long.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class,
+                () -> new MultipartParser("b".repeat(64 * 1024), tempDir, Long.MAX_VALUE));
+    }
+
+    @Test
+    void acceptsBoundaryOfMaximumLength() throws IOException {
+        String boundary = "b".repeat(MultipartParser.MAX_BOUNDARY_LENGTH);
+        byte[] body = ("--" + boundary + "\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\nx\r\n--"
+                + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+
+        List<MultipartParser.Part> parts = new MultipartParser(boundary, tempDir, Long.MAX_VALUE)
+                .parse(new ByteArrayInputStream(body));
+
+        assertEquals(1, parts.size());
+        assertEquals("x", parts.get(0).value());
+    }
+
+    private MultipartParser parser(long maxBytes) {
+        return new MultipartParser(BOUNDARY, tempDir, maxBytes);
+    }
+
+    private void assertNoTempFiles() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private static byte[] field(String name, String value) {
+        return ("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n")
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] file(String name, String filename, byte[] content) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"; filename=\""
+                + filename + "\"\r\nContent-Type: text/html\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(content);
+        out.writeBytes("\r\n".getBytes(StandardCharsets.US_ASCII));
+        return out.toByteArray();
+    }
+
+    /**
+     * 拼接各部分并以结束边界收尾，suffix 为 "--\r\n" 时是完整的请求体
+     */
+    private static byte[] body(Object... pieces) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Object piece : pieces) {
+            if (piece instanceof byte[] bytes) {
+                out.writeBytes(bytes);
+            } else {
+                out.writeBytes(("--" + BOUNDARY + piece).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 每次 read 最多返回 chunk 个字节，模拟网络上分段到达的请求体
+     */
+    private static class ChunkedInputStream extends InputStream {
+        private final byte[] data;
+        private final int chunk;
+        private int pos;
+
+        ChunkedInputStream(byte[] data, int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return pos < data.length ? data[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (pos >= data.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, chunk), data.length - pos);
+            System.arraycopy(data, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+}
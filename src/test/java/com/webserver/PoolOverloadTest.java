@@ -0,0 +1,143 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * web_executor=pool 下的过载行为：线程和队列都满时快速返回 503，不占用调度线程
+ */
+class PoolOverloadTest {
+    private static final int POOL_SIZE = 2;
+    private static final int POOL_QUEUE = 1;
+    /** 同时挂着的慢连接数，少于溢出线程数 */
+    private static final int STALLED = 3;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch started = new CountDownLatch(POOL_SIZE);
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private HttpServer server;
+    private ExecutorService pool;
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        if (server != null) {
+            server.stop(0);
+        }
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void shedsOverflowWith503WhileWorkersAreBusy() throws Exception {
+        // 与 WebServer 在线程池模式下的配置一致：上限等于线程数，不在准入队列中等待
+        AdmissionController admission = new AdmissionController(POOL_SIZE, 16, 0, 0);
+        URI slow = start(admission);
+
+        List<CompletableFuture<HttpResponse<String>>> held = new ArrayList<>();
+        for (int i = 0; i < POOL_SIZE + POOL_QUEUE; i++) {
+            held.add(client.sendAsync(request(slow), HttpResponse.BodyHandlers.ofString()));
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS), "pool threads did not pick up the requests");
+        awaitQueued(POOL_QUEUE);
+
+        // 请求头只发了一半的慢客户端：溢出的请求如果在调度线程上执行会卡住之后所有连接，
+        // 如果在虚拟线程上执行，读请求头时会钉住载体线程，CPU核数少时同样卡住所有 503
+        List<Socket> stalled = new ArrayList<>();
+        try {
+            for (int i = 0; i < STALLED; i++) {
+                Socket socket = new Socket(slow.getHost(), slow.getPort());
+                stalled.add(socket);
+                socket.getOutputStream().write("GET /slow HTTP/1.1\r\nHost: x\r\n".getBytes(StandardCharsets.US_ASCII));
+                socket.getOutputStream().flush();
+            }
+            Thread.sleep(100);
+
+            for (int i = 0; i < 3; i++) {
+                HttpResponse<String> shed = client.send(request(slow), HttpResponse.BodyHandlers.ofString());
+                assertEquals(503, shed.statusCode());
+                assertEquals("1", shed.headers().firstValue("Retry-After").orElse(null));
+            }
+            // 在关闭慢连接前检查：关闭后服务器可能把不完整的请求头当作请求再拒绝一次
+            assertEquals(3, admission.getRejectedQueueFull());
+            assertEquals(POOL_SIZE, admission.getInFlight());
+        } finally {
+            for (Socket socket : stalled) {
+                socket.close();
+            }
+        }
+
+        release.countDown();
+        for (CompletableFuture<HttpResponse<String>> response : held) {
+            assertEquals(200, response.get(5, TimeUnit.SECONDS).statusCode());
+        }
+        // 客户端收到响应时处理线程可能还没走出过滤器
+        awaitIdle(admission);
+        assertEquals(POOL_SIZE + POOL_QUEUE, admission.getAdmitted());
+    }
+
+    private URI start(AdmissionController admission) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/slow", exchange -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        }).getFilters().add(new WebServer.AdmissionFilter(admission, true));
+        pool = WebServer.newPool(POOL_SIZE, POOL_QUEUE);
+        server.setExecutor(pool);
+        server.start();
+        return URI.create("http://" + InetAddress.getLoopbackAddress().getHostAddress() + ":"
+                + server.getAddress().getPort() + "/slow");
+    }
+
+    private void awaitQueued(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (((ThreadPoolExecutor) pool).getQueue().size() < count) {
+            assertTrue(System.nanoTime() < deadline, "request was not queued");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitIdle(AdmissionController admission) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admission.getInFlight() > 0) {
+            assertTrue(System.nanoTime() < deadline, "admission slots were not released");
+            Thread.sleep(10);
+        }
+    }
+
+    private static HttpRequest request(URI uri) {
+        return HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).GET().build();
+    }
+}
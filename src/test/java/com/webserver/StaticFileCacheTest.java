@@ -0,0 +1,55 @@
+package com.webserver;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StaticFileCacheTest {
+    @TempDir
+    Path tempDir;
+
+    private final StaticFileCache cache = new StaticFileCache(1024 * 1024, 256 * 1024, 60_000,
+            filename -> "text/html", 256);
+
+    @Test
+    void invalidateReleasesCompressedVariants() throws IOException {
+        String filename = write("index.html", "<p>hello</p>\n".repeat(200));
+
+        StaticFileCache.Entry entry = cache.get(filename);
+        assertTrue(entry.hasEncodings());
+        assertTrue(cache.bytes() > entry.size());
+
+        cache.invalidate(filename);
+
+        assertEquals(0, cache.bytes());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void repeatedUploadsDoNotInflateByteTotal() throws IOException {
+        // 每次上传发布 index.html 都会使缓存失效一次
+        String filename = write("index.html", "<p>hello</p>\n".repeat(200));
+        cache.get(filename);
+        long cost = cache.bytes();
+
+        for (int i = 0; i < 5; i++) {
+            cache.invalidate(filename);
+            cache.get(filename);
+        }
+
+        assertEquals(cost, cache.bytes());
+        assertEquals(1, cache.size());
+    }
+
+    private String write(String name, String content) throws IOException {
+        Path file = tempDir.resolve(name);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+        return file.toString();
+    }
+}